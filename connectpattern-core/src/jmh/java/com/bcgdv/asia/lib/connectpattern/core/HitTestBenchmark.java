@@ -0,0 +1,66 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Grid cell hit-testing compared with the linear rectangle scan it replaced.
+ */
+@State(Scope.Thread)
+public class HitTestBenchmark {
+
+    private static final int SIZE = 1000;
+    private static final int RADIUS = 20;
+    private static final int TOUCH_SIZE = 10;
+    private static final int POINTS = 1024;
+
+    @Param({"3", "5", "10"})
+    public int gridSize;
+
+    private PatternGrid grid;
+    private final int[] pointX = new int[POINTS];
+    private final int[] pointY = new int[POINTS];
+    private int next;
+
+    @Setup
+    public void setup() {
+        grid = new PatternGrid(gridSize, gridSize);
+        grid.layout(0, 0, SIZE, SIZE, RADIUS);
+        Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            pointX[i] = random.nextInt(SIZE);
+            pointY[i] = random.nextInt(SIZE);
+        }
+    }
+
+    @Benchmark
+    public int gridCell() {
+        int i = next++ & (POINTS - 1);
+        return grid.findSlot(pointX[i], pointY[i], RADIUS + TOUCH_SIZE);
+    }
+
+    @Benchmark
+    public int rectScan() {
+        int i = next++ & (POINTS - 1);
+        int left = pointX[i] - TOUCH_SIZE;
+        int top = pointY[i] - TOUCH_SIZE;
+        int right = pointX[i] + TOUCH_SIZE;
+        int bottom = pointY[i] + TOUCH_SIZE;
+        int diameter = grid.getDiameter();
+        int[] indexes = grid.getIndexes();
+        for (int j = 0; j < indexes.length; j++) {
+            int slotLeft = grid.getLeft(indexes[j]);
+            int slotTop = grid.getTop(indexes[j]);
+            if (left < slotLeft + diameter && slotLeft < right
+                    && top < slotTop + diameter && slotTop < bottom) {
+                return indexes[j];
+            }
+        }
+        return -1;
+    }
+}
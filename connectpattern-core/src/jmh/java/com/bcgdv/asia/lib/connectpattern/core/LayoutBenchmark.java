@@ -0,0 +1,32 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of laying out grids of growing size.
+ */
+@State(Scope.Thread)
+public class LayoutBenchmark {
+
+    @Param({"3", "6", "12"})
+    public int gridSize;
+
+    private PatternGrid grid;
+    private int size;
+
+    @Setup
+    public void setup() {
+        grid = new PatternGrid(gridSize, gridSize);
+    }
+
+    @Benchmark
+    public PatternGrid layout() {
+        size = size == 1000 ? 1001 : 1000;
+        grid.layout(0, 0, size, size, 14);
+        return grid;
+    }
+}
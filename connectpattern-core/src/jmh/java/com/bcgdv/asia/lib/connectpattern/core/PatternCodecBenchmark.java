@@ -0,0 +1,62 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Encode, hash and compare throughput of {@link PatternCodec}.
+ */
+@State(Scope.Thread)
+public class PatternCodecBenchmark {
+
+    private final int[] smallPattern = {0, 4, 8, 5, 2, 1, 3, 6, 7};
+    private final int[] largePattern = new int[64];
+    private final byte[] buffer = new byte[PatternCodec.maxEncodedLength(144)];
+    private byte[] encodedLarge;
+    private byte[] encodedLargeCopy;
+    private long encodedSmall;
+    private long encodedSmallCopy;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < largePattern.length; i++) {
+            largePattern[i] = (i * 37) % 144;
+        }
+        encodedLarge = PatternCodec.encodeBytes(largePattern, largePattern.length);
+        encodedLargeCopy = encodedLarge.clone();
+        encodedSmall = PatternCodec.encodeLong(smallPattern, smallPattern.length);
+        encodedSmallCopy = encodedSmall;
+    }
+
+    @Benchmark
+    public long encodeLong() {
+        return PatternCodec.encodeLong(smallPattern, smallPattern.length);
+    }
+
+    @Benchmark
+    public int encodeBytes() {
+        return PatternCodec.encodeBytes(largePattern, largePattern.length, buffer, 0);
+    }
+
+    @Benchmark
+    public long hashLong() {
+        return PatternCodec.hash(encodedSmall);
+    }
+
+    @Benchmark
+    public long hashBytes() {
+        return PatternCodec.hash(encodedLarge, 0, encodedLarge.length);
+    }
+
+    @Benchmark
+    public boolean compareLong() {
+        return PatternCodec.constantTimeEquals(encodedSmall, encodedSmallCopy);
+    }
+
+    @Benchmark
+    public boolean compareBytes() {
+        return PatternCodec.constantTimeEquals(encodedLarge, encodedLargeCopy);
+    }
+}
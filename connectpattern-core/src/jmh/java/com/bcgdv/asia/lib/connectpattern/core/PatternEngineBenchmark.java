@@ -0,0 +1,71 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Nanoseconds per touch event spent in the pattern engine.
+ * <p>
+ * Run with {@code ./gradlew :connectpattern-core:jmh}.
+ */
+@State(Scope.Thread)
+public class PatternEngineBenchmark {
+
+    private static final int SIZE = 1000;
+    private static final int RADIUS = 40;
+    private static final int TOUCH_SIZE = 20;
+
+    /**
+     * Touch coordinates of a swipe across the whole grid, from the top left to the bottom right
+     */
+    private final int[] swipeX = new int[64];
+    private final int[] swipeY = new int[64];
+
+    private final int[] result = new int[PatternGrid.SLOT_COUNT];
+
+    private PatternEngine engine;
+    private int next;
+
+    @Setup
+    public void setup() {
+        PatternGrid grid = new PatternGrid();
+        grid.layout(0, 0, SIZE, SIZE, RADIUS);
+        engine = new PatternEngine(grid);
+        engine.setTouchSize(TOUCH_SIZE);
+        for (int i = 0; i < swipeX.length; i++) {
+            swipeX[i] = RADIUS + (SIZE - 2 * RADIUS) * i / (swipeX.length - 1);
+            swipeY[i] = swipeX[i];
+        }
+    }
+
+    @Benchmark
+    public int hitTest() {
+        int i = next++ & (swipeX.length - 1);
+        return engine.hitTest(swipeX[i], swipeY[i]);
+    }
+
+    @Benchmark
+    public void moveEvent(Blackhole bh) {
+        int i = next++ & (swipeX.length - 1);
+        if (i == 0) {
+            engine.reset();
+            engine.onTouchDown(swipeX[0], swipeY[0]);
+        }
+        engine.onTouchMove(swipeX[i], swipeY[i]);
+        bh.consume(engine.getConnectedCount());
+    }
+
+    @Benchmark
+    public int finishPattern() {
+        engine.onTouchDown(swipeX[0], swipeY[0]);
+        engine.onTouchMove(swipeX[swipeX.length / 2], swipeY[swipeY.length / 2]);
+        engine.onTouchMove(swipeX[swipeX.length - 1], swipeY[swipeY.length - 1]);
+        engine.onTouchUp();
+        int entered = engine.isPatternEntered() ? engine.getPath().copyTo(result) : 0;
+        engine.reset();
+        return entered;
+    }
+}
@@ -0,0 +1,36 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to count every lock screen pattern of a square grid, without the shared results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PatternSpaceBenchmark {
+
+    @Param({"3", "4"})
+    public int gridSize;
+
+    private PatternGrid grid;
+
+    @Setup
+    public void setup() {
+        grid = new PatternGrid(gridSize, gridSize);
+    }
+
+    @Benchmark
+    public PatternSpace count() {
+        return new PatternSpace(grid, PatternSpace.RULE_NO_SKIP);
+    }
+}
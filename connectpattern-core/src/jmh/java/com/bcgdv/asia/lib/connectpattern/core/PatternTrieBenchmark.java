@@ -0,0 +1,76 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Lookup time and memory footprint of {@link PatternTrie} holding many random 5x5 patterns.
+ * The footprint of every size is printed once the trie is built.
+ */
+@State(Scope.Thread)
+public class PatternTrieBenchmark {
+
+    private static final int SLOT_COUNT = 25;
+    private static final int QUERIES = 1024;
+
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+
+    private PatternTrie trie;
+    private final int[][] stored = new int[QUERIES][];
+    private final int[][] missing = new int[QUERIES][];
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(entries);
+        PatternTrie.Builder builder = new PatternTrie.Builder(entries * 4);
+        for (int i = 0; i < entries; i++) {
+            int[] pattern = randomPattern(random);
+            builder.add(pattern, pattern.length, i);
+            if (i < QUERIES) {
+                stored[i] = pattern;
+            }
+        }
+        trie = builder.build();
+        for (int i = 0; i < QUERIES; i++) {
+            missing[i] = randomPattern(random);
+        }
+        System.out.println("\n" + trie.size() + " patterns, " + trie.getNodeCount() + " nodes, "
+                + trie.getMemoryBytes() + " bytes");
+    }
+
+    /**
+     * Random pattern of 4 to 9 different slots
+     */
+    private static int[] randomPattern(Random random) {
+        int[] slots = new int[SLOT_COUNT];
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            slots[i] = i;
+        }
+        int[] pattern = new int[4 + random.nextInt(6)];
+        for (int i = 0; i < pattern.length; i++) {
+            int pick = i + random.nextInt(SLOT_COUNT - i);
+            pattern[i] = slots[pick];
+            slots[pick] = slots[i];
+        }
+        return pattern;
+    }
+
+    @Benchmark
+    public int lookupStored() {
+        int[] pattern = stored[next++ & (QUERIES - 1)];
+        return trie.get(pattern, pattern.length);
+    }
+
+    @Benchmark
+    public int lookupMissing() {
+        int[] pattern = missing[next++ & (QUERIES - 1)];
+        return trie.get(pattern, pattern.length);
+    }
+}
@@ -0,0 +1,76 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Replays a gesture trace through a {@link TouchPredictor}, printing how far the predicted and
+ * the unpredicted line ends are from the real finger and measuring the cost of predicting.
+ * Set the system property {@code connectpattern.trace} to a trace exported from a device,
+ * otherwise a synthetic trace of wavy swipes sampled at 240 Hz is used.
+ */
+@State(Scope.Thread)
+public class TouchPredictionBenchmark {
+
+    @Param({"8", "16", "24"})
+    public int horizon;
+
+    private GestureTrace trace;
+    private TouchPredictor predictor;
+
+    @Setup
+    public void setup() throws IOException {
+        String path = System.getProperty("connectpattern.trace");
+        if (path != null) {
+            RandomAccessFile file = new RandomAccessFile(new File(path), "r");
+            try {
+                byte[] data = new byte[(int) file.length()];
+                file.readFully(data);
+                trace = GestureTrace.fromByteArray(data);
+            } finally {
+                file.close();
+            }
+        } else {
+            trace = new GestureTrace(64 * 1024);
+            for (int gesture = 0; gesture < 50; gesture++) {
+                long time = gesture * 1000L;
+                for (int i = 0; i <= 120; i++) {
+                    float x = Math.round(42 + 996f * i / 120);
+                    float y = Math.round(540 + (float) Math.sin(i / 20.0 + gesture) * 300);
+                    int action = i == 0 ? GestureTrace.ACTION_DOWN
+                            : i == 120 ? GestureTrace.ACTION_UP : GestureTrace.ACTION_MOVE;
+                    trace.record(action, time + i * 4, x, y);
+                }
+            }
+        }
+        predictor = new TouchPredictor(horizon, 200);
+
+        PredictionReplayer replayer = new PredictionReplayer(new TouchPredictor(horizon, 200));
+        replayer.replay(trace);
+        System.out.printf("%n%d ms horizon: %.1f px predicted, %.1f px unpredicted, %.1f px worst, %.1f ms lag left%n",
+                horizon, replayer.getMeanPredictedError(), replayer.getMeanUnpredictedError(),
+                replayer.getMaxPredictedError(), replayer.getRemainingLag());
+    }
+
+    @Benchmark
+    public float predictEverySample() {
+        GestureTrace.Cursor cursor = trace.newCursor();
+        float sum = 0;
+        while (cursor.next()) {
+            if (cursor.getAction() == GestureTrace.ACTION_DOWN) {
+                predictor.reset();
+            }
+            predictor.addSample(cursor.getTime(), cursor.getX(), cursor.getY());
+            predictor.predict();
+            sum += predictor.getPredictedX();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,68 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Replays a gesture trace through the engine. Set the system property
+ * {@code connectpattern.trace} to a trace exported from a device to benchmark a real
+ * workload, otherwise a synthetic trace of wavy swipes over a 3x3 grid is used.
+ */
+@State(Scope.Thread)
+public class TraceReplayBenchmark {
+
+    @Param({"3"})
+    public int gridSize;
+
+    private GestureTrace trace;
+    private TraceReplayer replayer;
+
+    @Setup
+    public void setup() throws IOException {
+        PatternGrid grid = new PatternGrid(gridSize, gridSize);
+        grid.layout(0, 0, 1080, 1080, 42);
+        PatternEngine engine = new PatternEngine(grid);
+        engine.setTouchSize(21);
+        replayer = new TraceReplayer(engine);
+
+        String path = System.getProperty("connectpattern.trace");
+        if (path != null) {
+            RandomAccessFile file = new RandomAccessFile(new File(path), "r");
+            try {
+                byte[] data = new byte[(int) file.length()];
+                file.readFully(data);
+                trace = GestureTrace.fromByteArray(data);
+            } finally {
+                file.close();
+            }
+            return;
+        }
+        trace = new GestureTrace(64 * 1024);
+        for (int gesture = 0; gesture < 50; gesture++) {
+            long time = gesture * 1000L;
+            trace.record(GestureTrace.ACTION_DOWN, time, 42, 42);
+            for (int i = 1; i <= 120; i++) {
+                float x = 42 + 996f * i / 120;
+                float y = 540 + (float) Math.sin(i / 10.0 + gesture) * 498;
+                if (i % 4 == 0) {
+                    trace.record(GestureTrace.ACTION_MOVE, time + i * 4, x, y);
+                } else {
+                    trace.recordHistorical(time + i * 4, x, y);
+                }
+            }
+            trace.record(GestureTrace.ACTION_UP, time + 500, 1038, 540);
+        }
+    }
+
+    @Benchmark
+    public int replay() {
+        return replayer.replay(trace);
+    }
+}
@@ -0,0 +1,158 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a {@link PatternVerifier} on a background executor and reports the result on a
+ * callback executor, typically the UI thread.
+ * <p>
+ * Only the latest request is reported: starting a new verification or calling
+ * {@link #cancel()} drops the previous one. {@link #verify(int[], Callback)} and
+ * {@link #cancel()} must be called on the callback executor's thread.
+ */
+public class AsyncPatternVerifier {
+
+    /**
+     * Receives the result of a verification on the callback executor
+     */
+    public interface Callback {
+        /**
+         * @param pattern the verified pattern
+         * @param matched true if the verifier accepted it
+         */
+        void onVerified(int[] pattern, boolean matched);
+    }
+
+    private final PatternVerifier verifier;
+    private final ExecutorService background;
+    private final Executor callbackExecutor;
+
+    /**
+     * Results of earlier verifications keyed by the encoded pattern, least recently used first
+     */
+    private Map<ByteBuffer, Boolean> cache;
+
+    private Future<?> running;
+
+    /**
+     * Incremented for every request, results of older requests are dropped
+     */
+    private volatile int generation;
+
+    /**
+     * @param verifier         verifier to run
+     * @param background       executor running the verifier
+     * @param callbackExecutor executor delivering the results
+     */
+    public AsyncPatternVerifier(PatternVerifier verifier, ExecutorService background, Executor callbackExecutor) {
+        this.verifier = verifier;
+        this.background = background;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Keep the results of up to the given number of patterns, so repeated patterns are
+     * answered without running the verifier again. Disabled by default.
+     *
+     * @param maxEntries number of cached results, 0 to disable the cache
+     */
+    public void setCacheSize(final int maxEntries) {
+        if (maxEntries <= 0) {
+            cache = null;
+            return;
+        }
+        cache = new LinkedHashMap<ByteBuffer, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Verify a pattern, cancelling any verification still running
+     *
+     * @param pattern  slot indexes in the order they were connected, must not be modified afterwards
+     * @param callback receives the result unless the request is cancelled first
+     */
+    public void verify(final int[] pattern, final Callback callback) {
+        cancel();
+        final int request = generation;
+        final ByteBuffer key = ByteBuffer.wrap(PatternCodec.encodeBytes(pattern, pattern.length));
+        if (cache != null) {
+            final Boolean cached = cache.get(key);
+            if (cached != null) {
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (request == generation) {
+                            callback.onVerified(pattern, cached);
+                        }
+                    }
+                });
+                return;
+            }
+        }
+        running = background.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (request != generation) {
+                    return;
+                }
+                boolean matched;
+                boolean verified;
+                try {
+                    matched = verifier.verify(pattern);
+                    verified = true;
+                } catch (Exception e) {
+                    matched = false;
+                    verified = false;
+                }
+                deliver(request, key, pattern, matched, verified, callback);
+            }
+        });
+    }
+
+    private void deliver(final int request, final ByteBuffer key, final int[] pattern,
+                         final boolean matched, final boolean verified, final Callback callback) {
+        if (request != generation) {
+            return;
+        }
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (request != generation) {
+                    return;
+                }
+                running = null;
+                if (verified && cache != null) {
+                    cache.put(key, matched);
+                }
+                callback.onVerified(pattern, matched);
+            }
+        });
+    }
+
+    /**
+     * Drop the running verification, its result will not be reported
+     */
+    public void cancel() {
+        generation++;
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+    }
+
+    /**
+     * @return true while a verification is waiting for its result
+     */
+    public boolean isVerifying() {
+        return running != null;
+    }
+}
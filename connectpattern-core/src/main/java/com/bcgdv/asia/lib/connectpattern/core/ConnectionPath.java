@@ -0,0 +1,93 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import java.util.ArrayList;
+
+/**
+ * Order of connected slots stored in primitive buffers that are allocated once per grid.
+ * <p>
+ * Visited slots are tracked in a bitset so membership checks take constant time.
+ */
+public class ConnectionPath implements PatternPath {
+
+    /**
+     * One bit per slot, set when the slot is connected
+     */
+    private final long[] visited;
+
+    /**
+     * Array of indexes of slots in order they were connected
+     */
+    private final int[] order;
+
+    private int size;
+
+    /**
+     * @param slotCount number of slots in the grid
+     */
+    public ConnectionPath(int slotCount) {
+        visited = new long[(slotCount + 63) >>> 6];
+        order = new int[slotCount];
+    }
+
+    /**
+     * Connect a slot unless it is already part of the path
+     *
+     * @param slot slot index
+     * @return true if the slot was added
+     */
+    public boolean add(int slot) {
+        int word = slot >>> 6;
+        long bit = 1L << slot;
+        if ((visited[word] & bit) != 0) {
+            return false;
+        }
+        visited[word] |= bit;
+        order[size++] = slot;
+        return true;
+    }
+
+    /**
+     * Disconnect every slot
+     */
+    public void clear() {
+        for (int i = 0; i < visited.length; i++) {
+            visited[i] = 0;
+        }
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + size);
+        }
+        return order[position];
+    }
+
+    @Override
+    public boolean contains(int slot) {
+        return (visited[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    @Override
+    public int copyTo(int[] destination) {
+        System.arraycopy(order, 0, destination, 0, size);
+        return size;
+    }
+
+    /**
+     * @return a new list of the connected slots, for listeners that need boxed values
+     */
+    public ArrayList<Integer> toList() {
+        ArrayList<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(order[i]);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,102 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * Bounding box of everything that changed since the last frame was drawn.
+ */
+public class DirtyRegion {
+
+    private int left;
+    private int top;
+    private int right;
+    private int bottom;
+    private boolean empty = true;
+
+    /**
+     * Grow the region to include a rectangle
+     *
+     * @param left   left edge
+     * @param top    top edge
+     * @param right  right edge
+     * @param bottom bottom edge
+     */
+    public void add(int left, int top, int right, int bottom) {
+        if (left >= right || top >= bottom) {
+            return;
+        }
+        if (empty) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            empty = false;
+            return;
+        }
+        this.left = Math.min(this.left, left);
+        this.top = Math.min(this.top, top);
+        this.right = Math.max(this.right, right);
+        this.bottom = Math.max(this.bottom, bottom);
+    }
+
+    /**
+     * Grow the region to include a point and its surroundings
+     *
+     * @param x     x coordinate
+     * @param y     y coordinate
+     * @param inset distance around the point to include
+     */
+    public void addPoint(int x, int y, int inset) {
+        add(x - inset, y - inset, x + inset + 1, y + inset + 1);
+    }
+
+    /**
+     * Grow the region to include a line segment drawn with the given half width
+     *
+     * @param x0    start x coordinate
+     * @param y0    start y coordinate
+     * @param x1    end x coordinate
+     * @param y1    end y coordinate
+     * @param inset half of the stroke width
+     */
+    public void addSegment(int x0, int y0, int x1, int y1, int inset) {
+        add(Math.min(x0, x1) - inset, Math.min(y0, y1) - inset,
+                Math.max(x0, x1) + inset + 1, Math.max(y0, y1) + inset + 1);
+    }
+
+    /**
+     * Forget the region, typically once the frame has been drawn
+     */
+    public void clear() {
+        empty = true;
+        left = 0;
+        top = 0;
+        right = 0;
+        bottom = 0;
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    /**
+     * @return number of pixels covered by the region
+     */
+    public int getArea() {
+        return empty ? 0 : (right - left) * (bottom - top);
+    }
+}
@@ -0,0 +1,321 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * Compact recording of raw touch samples in a ring buffer of fixed size.
+ * <p>
+ * Every gesture starts with a down sample holding its absolute time and position, the
+ * following samples only store the difference to the previous one as variable length
+ * integers, so a typical sample takes 4 to 6 bytes. When the buffer is full the oldest
+ * whole gestures are dropped, a gesture that outgrows the whole buffer is dropped as well.
+ * Positions are kept with a precision of 1/8 pixel and times in milliseconds.
+ * <p>
+ * Recording never allocates. A trace is not thread safe, record and read it on one thread.
+ */
+public class GestureTrace {
+
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_MOVE = 1;
+    public static final int ACTION_UP = 2;
+    public static final int ACTION_CANCEL = 3;
+
+    /**
+     * Header flag of samples batched into the history of the next sample
+     */
+    private static final int HISTORICAL = 4;
+    private static final int ACTION_MASK = 3;
+
+    private static final float POSITION_SCALE = 8f;
+
+    /**
+     * Longest record: header, time and two coordinates
+     */
+    private static final int MAX_RECORD = 1 + 10 + 5 + 5;
+
+    private final byte[] buffer;
+
+    /**
+     * Offset of the oldest record, always the down sample of a gesture
+     */
+    private int start;
+    private int size;
+
+    /**
+     * Offset of the down sample of the gesture being recorded
+     */
+    private int gestureStart;
+
+    /**
+     * False until the next down sample after a gesture was dropped
+     */
+    private boolean recording;
+
+    private long lastTime;
+    private int lastX;
+    private int lastY;
+    private final byte[] record = new byte[MAX_RECORD];
+
+    /**
+     * @param capacity size of the ring buffer in bytes
+     */
+    public GestureTrace(int capacity) {
+        if (capacity < MAX_RECORD) {
+            throw new IllegalArgumentException("Capacity must be at least " + MAX_RECORD + " bytes");
+        }
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * Load a trace exported by {@link #toByteArray()}, new samples are appended from the next down sample on
+     *
+     * @param data exported trace
+     * @return trace holding the exported samples
+     */
+    public static GestureTrace fromByteArray(byte[] data) {
+        GestureTrace trace = new GestureTrace(Math.max(data.length, MAX_RECORD));
+        System.arraycopy(data, 0, trace.buffer, 0, data.length);
+        trace.size = data.length;
+        return trace;
+    }
+
+    /**
+     * Record a sample of a touch event
+     *
+     * @param action     one of the ACTION constants
+     * @param timeMillis time of the sample
+     * @param x          x coordinate
+     * @param y          y coordinate
+     */
+    public void record(int action, long timeMillis, float x, float y) {
+        append(action, timeMillis, x, y);
+    }
+
+    /**
+     * Record a historical sample batched into the next move or up sample
+     *
+     * @param timeMillis time of the sample
+     * @param x          x coordinate
+     * @param y          y coordinate
+     */
+    public void recordHistorical(long timeMillis, float x, float y) {
+        append(ACTION_MOVE | HISTORICAL, timeMillis, x, y);
+    }
+
+    private void append(int header, long timeMillis, float x, float y) {
+        int scaledX = Math.round(x * POSITION_SCALE);
+        int scaledY = Math.round(y * POSITION_SCALE);
+        boolean down = header == ACTION_DOWN;
+        if (!down && !recording) {
+            return;
+        }
+        int length = 0;
+        record[length++] = (byte) header;
+        if (down) {
+            length = writeVarint(timeMillis, length);
+            length = writeVarint(zigzag(scaledX), length);
+            length = writeVarint(zigzag(scaledY), length);
+        } else {
+            length = writeVarint(Math.max(timeMillis - lastTime, 0), length);
+            length = writeVarint(zigzag(scaledX - lastX), length);
+            length = writeVarint(zigzag(scaledY - lastY), length);
+        }
+        lastTime = timeMillis;
+        lastX = scaledX;
+        lastY = scaledY;
+
+        if (down) {
+            while (size + length > buffer.length) {
+                dropOldestGesture();
+            }
+            gestureStart = (start + size) % buffer.length;
+            recording = true;
+        }
+        while (size + length > buffer.length) {
+            if (start == gestureStart) {
+                // the current gesture alone does not fit, drop it
+                dropGesture();
+                return;
+            }
+            dropOldestGesture();
+        }
+        int position = (start + size) % buffer.length;
+        for (int i = 0; i < length; i++) {
+            buffer[position] = record[i];
+            position = position + 1 == buffer.length ? 0 : position + 1;
+        }
+        size += length;
+    }
+
+    /**
+     * Remove the records of the oldest gesture
+     */
+    private void dropOldestGesture() {
+        int offset = skipRecord(0);
+        while (offset < size && (buffer[(start + offset) % buffer.length] & ACTION_MASK) != ACTION_DOWN) {
+            offset = skipRecord(offset);
+        }
+        start = (start + offset) % buffer.length;
+        size -= offset;
+    }
+
+    /**
+     * Remove the gesture being recorded and ignore its remaining samples
+     */
+    private void dropGesture() {
+        size = (gestureStart - start + buffer.length) % buffer.length;
+        recording = false;
+    }
+
+    /**
+     * @return offset of the record following the one at the given offset
+     */
+    private int skipRecord(int offset) {
+        offset++;
+        for (int values = 0; values < 3; values++) {
+            while ((buffer[(start + offset++) % buffer.length] & 0x80) != 0) {
+                // continuation byte
+            }
+        }
+        return offset;
+    }
+
+    private int writeVarint(long value, int position) {
+        while ((value & ~0x7FL) != 0) {
+            record[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        record[position++] = (byte) value;
+        return position;
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unzigzag(long value) {
+        int v = (int) value;
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Remove all samples
+     */
+    public void clear() {
+        start = 0;
+        size = 0;
+        recording = false;
+    }
+
+    /**
+     * @return number of bytes used
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return size of the ring buffer in bytes
+     */
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * @return the recorded samples, oldest first, readable with {@link #fromByteArray(byte[])}
+     */
+    public byte[] toByteArray() {
+        byte[] data = new byte[size];
+        int first = Math.min(size, buffer.length - start);
+        System.arraycopy(buffer, start, data, 0, first);
+        System.arraycopy(buffer, 0, data, first, size - first);
+        return data;
+    }
+
+    /**
+     * @return cursor over the recorded samples, oldest first
+     */
+    public Cursor newCursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Reads the samples of a trace one after the other without allocating
+     */
+    public class Cursor {
+
+        private int offset;
+        private int header;
+        private long time;
+        private int x;
+        private int y;
+
+        /**
+         * Start again from the oldest sample
+         */
+        public void rewind() {
+            offset = 0;
+        }
+
+        /**
+         * Move to the next sample
+         *
+         * @return false when there are no more samples
+         */
+        public boolean next() {
+            if (offset >= size) {
+                return false;
+            }
+            header = buffer[(start + offset++) % buffer.length];
+            long timeValue = readVarint();
+            int xValue = unzigzag(readVarint());
+            int yValue = unzigzag(readVarint());
+            if (getAction() == ACTION_DOWN) {
+                time = timeValue;
+                x = xValue;
+                y = yValue;
+            } else {
+                time += timeValue;
+                x += xValue;
+                y += yValue;
+            }
+            return true;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[(start + offset++) % buffer.length];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        /**
+         * @return one of the ACTION constants
+         */
+        public int getAction() {
+            return header & ACTION_MASK;
+        }
+
+        /**
+         * @return true if the sample is part of the history of the next one
+         */
+        public boolean isHistorical() {
+            return (header & HISTORICAL) != 0;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public float getX() {
+            return x / POSITION_SCALE;
+        }
+
+        public float getY() {
+            return y / POSITION_SCALE;
+        }
+    }
+}
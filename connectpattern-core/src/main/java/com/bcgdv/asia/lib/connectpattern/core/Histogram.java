@@ -0,0 +1,126 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * Counts values in buckets with fixed upper bounds, plus one bucket for larger values.
+ * <p>
+ * Recording a value never allocates, so a histogram can sit on the touch and draw paths.
+ */
+public class Histogram {
+
+    /**
+     * Inclusive upper bound of every bucket but the last
+     */
+    private final long[] upperBounds;
+    private final long[] counts;
+    private long total;
+    private long sum;
+    private long max;
+
+    /**
+     * @param upperBounds inclusive upper bounds of the buckets, in increasing order
+     */
+    public Histogram(long... upperBounds) {
+        for (int i = 1; i < upperBounds.length; i++) {
+            if (upperBounds[i] <= upperBounds[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds must increase");
+            }
+        }
+        this.upperBounds = upperBounds.clone();
+        this.counts = new long[upperBounds.length + 1];
+    }
+
+    /**
+     * @param value value to count
+     */
+    public void record(long value) {
+        int low = 0;
+        int high = upperBounds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (upperBounds[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        counts[low]++;
+        total++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Forget every recorded value
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        total = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * @return number of buckets, including the one for values above the last bound
+     */
+    public int getBucketCount() {
+        return counts.length;
+    }
+
+    /**
+     * @param bucket bucket index
+     * @return inclusive upper bound of the bucket, {@link Long#MAX_VALUE} for the last one
+     */
+    public long getUpperBound(int bucket) {
+        return bucket < upperBounds.length ? upperBounds[bucket] : Long.MAX_VALUE;
+    }
+
+    /**
+     * @param bucket bucket index
+     * @return number of values counted in the bucket
+     */
+    public long getCount(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * Copy the bucket counts, for exporting them without allocating
+     *
+     * @param destination at least {@link #getBucketCount()} elements
+     */
+    public void copyCounts(long[] destination) {
+        System.arraycopy(counts, 0, destination, 0, counts.length);
+    }
+
+    public long getTotalCount() {
+        return total;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getMean() {
+        return total > 0 ? sum / total : 0;
+    }
+
+    /**
+     * @param fraction fraction of values, from 0 to 1, for example 0.99
+     * @return upper bound of the bucket holding the value at this fraction, or the largest
+     * value when it lies in the last bucket
+     */
+    public long getPercentile(double fraction) {
+        long target = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target && seen > 0) {
+                return i < upperBounds.length ? Math.min(upperBounds[i], max) : max;
+            }
+        }
+        return 0;
+    }
+}
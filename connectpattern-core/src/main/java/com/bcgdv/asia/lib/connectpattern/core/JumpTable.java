@@ -0,0 +1,110 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Slots lying exactly on the straight line between any two slots of a grid, in the order
+ * they are passed when moving from the first to the second.
+ * <p>
+ * The table is computed once per grid size, so connecting the slots a finger jumped over
+ * takes no geometry while touches are handled. All lists are stored in one flat array,
+ * the list of a pair runs from {@link #getStart(int, int)} to {@link #getEnd(int, int)}.
+ */
+public class JumpTable {
+
+    private static final Map<Integer, JumpTable> sTables = new HashMap<>();
+
+    private final int slotCount;
+
+    /**
+     * Position of the first intermediate slot of every pair, one extra element closes the last list
+     */
+    private final int[] starts;
+
+    /**
+     * Intermediate slots of all pairs
+     */
+    private final short[] slots;
+
+    /**
+     * @param columns number of columns
+     * @param rows    number of rows
+     * @return the shared table of a grid size
+     */
+    public static synchronized JumpTable forGrid(int columns, int rows) {
+        Integer key = columns * (PatternGrid.MAX_SIZE + 1) + rows;
+        JumpTable table = sTables.get(key);
+        if (table == null) {
+            table = new JumpTable(columns, rows);
+            sTables.put(key, table);
+        }
+        return table;
+    }
+
+    private JumpTable(int columns, int rows) {
+        slotCount = columns * rows;
+        starts = new int[slotCount * slotCount + 1];
+        int total = 0;
+        for (int from = 0; from < slotCount; from++) {
+            for (int to = 0; to < slotCount; to++) {
+                starts[from * slotCount + to] = total;
+                total += steps(from, to, columns) - 1;
+            }
+        }
+        starts[slotCount * slotCount] = total;
+
+        slots = new short[total];
+        int position = 0;
+        for (int from = 0; from < slotCount; from++) {
+            for (int to = 0; to < slotCount; to++) {
+                int steps = steps(from, to, columns);
+                int stepColumn = (to % columns - from % columns) / steps;
+                int stepRow = (to / columns - from / columns) / steps;
+                for (int i = 1; i < steps; i++) {
+                    slots[position++] = (short) (from + i * (stepRow * columns + stepColumn));
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of equal steps between two slots, the greatest common divisor of their distances
+     */
+    private static int steps(int from, int to, int columns) {
+        int a = Math.abs(to % columns - from % columns);
+        int b = Math.abs(to / columns - from / columns);
+        while (b != 0) {
+            int remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return Math.max(a, 1);
+    }
+
+    /**
+     * @param from slot the line starts at
+     * @param to   slot the line ends at
+     * @return position of the first intermediate slot
+     */
+    public int getStart(int from, int to) {
+        return starts[from * slotCount + to];
+    }
+
+    /**
+     * @param from slot the line starts at
+     * @param to   slot the line ends at
+     * @return position after the last intermediate slot
+     */
+    public int getEnd(int from, int to) {
+        return starts[from * slotCount + to + 1];
+    }
+
+    /**
+     * @param position position from {@link #getStart(int, int)} to {@link #getEnd(int, int)} - 1
+     * @return intermediate slot
+     */
+    public int getSlot(int position) {
+        return slots[position];
+    }
+}
@@ -0,0 +1,144 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * Moves any number of slots from one position to another, driven by a single time value.
+ * <p>
+ * All state lives in primitive arrays allocated once per grid, so starting an animation
+ * and advancing it by a frame never allocate.
+ */
+public class PatternAnimation {
+
+    public static final int INTERPOLATOR_LINEAR = 0;
+    public static final int INTERPOLATOR_ACCELERATE = 1;
+    public static final int INTERPOLATOR_DECELERATE = 2;
+    public static final int INTERPOLATOR_OVERSHOOT = 3;
+
+    /**
+     * Tension of the overshoot interpolator, same as the platform default
+     */
+    private static final float OVERSHOOT_TENSION = 2.0f;
+
+    private final int[] slots;
+    private final int[] fromLeft;
+    private final int[] fromTop;
+    private final int[] toLeft;
+    private final int[] toTop;
+    private final long[] delays;
+    private int count;
+
+    private long duration;
+    private int interpolator = INTERPOLATOR_LINEAR;
+
+    /**
+     * @param slotCount number of slots in the grid
+     */
+    public PatternAnimation(int slotCount) {
+        slots = new int[slotCount];
+        fromLeft = new int[slotCount];
+        fromTop = new int[slotCount];
+        toLeft = new int[slotCount];
+        toTop = new int[slotCount];
+        delays = new long[slotCount];
+    }
+
+    /**
+     * Remove all slots and prepare a new animation
+     *
+     * @param duration     duration of the movement of a single slot
+     * @param interpolator one of the INTERPOLATOR constants
+     */
+    public void reset(long duration, int interpolator) {
+        this.count = 0;
+        this.duration = duration;
+        this.interpolator = interpolator;
+    }
+
+    /**
+     * Animate a slot
+     *
+     * @param slot     slot index
+     * @param fromLeft left edge at the start
+     * @param fromTop  top edge at the start
+     * @param toLeft   left edge at the end
+     * @param toTop    top edge at the end
+     * @param delay    time before this slot starts moving
+     */
+    public void add(int slot, int fromLeft, int fromTop, int toLeft, int toTop, long delay) {
+        this.slots[count] = slot;
+        this.fromLeft[count] = fromLeft;
+        this.fromTop[count] = fromTop;
+        this.toLeft[count] = toLeft;
+        this.toTop[count] = toTop;
+        this.delays[count] = delay;
+        count++;
+    }
+
+    /**
+     * @return number of animated slots
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param position position from 0 to {@link #getCount()} - 1
+     * @return slot index animated at the given position
+     */
+    public int getSlot(int position) {
+        return slots[position];
+    }
+
+    /**
+     * @return time until the last slot reaches its end position
+     */
+    public long getTotalDuration() {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total = Math.max(total, delays[i] + duration);
+        }
+        return total;
+    }
+
+    /**
+     * Write the positions of all animated slots at the given time
+     *
+     * @param playTime time since the animation started
+     * @param left     left edges indexed by slot
+     * @param top      top edges indexed by slot
+     */
+    public void apply(long playTime, int[] left, int[] top) {
+        for (int i = 0; i < count; i++) {
+            float fraction = fraction(playTime - delays[i]);
+            int slot = slots[i];
+            left[slot] = fromLeft[i] + Math.round((toLeft[i] - fromLeft[i]) * fraction);
+            top[slot] = fromTop[i] + Math.round((toTop[i] - fromTop[i]) * fraction);
+        }
+    }
+
+    /**
+     * Interpolated progress of a single slot
+     */
+    private float fraction(long elapsed) {
+        if (elapsed <= 0) {
+            return duration > 0 ? interpolate(0) : 1;
+        }
+        if (elapsed >= duration) {
+            return 1;
+        }
+        return interpolate((float) elapsed / duration);
+    }
+
+    private float interpolate(float t) {
+        switch (interpolator) {
+            case INTERPOLATOR_ACCELERATE:
+                return t * t;
+            case INTERPOLATOR_DECELERATE:
+                return 1 - (1 - t) * (1 - t);
+            case INTERPOLATOR_OVERSHOOT:
+                t -= 1;
+                return t * t * ((OVERSHOOT_TENSION + 1) * t + OVERSHOOT_TENSION) + 1;
+            default:
+                return t;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Canonical compact encodings of a pattern, plus hashing and comparison helpers.
+ * <p>
+ * Grids of up to 16 slots encode into a single {@code long}: the number of slots minus one
+ * in the top 4 bits and the first 15 slots in 4 bits each, lowest bits first. Because a
+ * slot is never connected twice, the 16th slot of a full pattern is the one missing from
+ * the first 15. Larger grids use the byte form: the number of slots followed by every slot,
+ * each as an unsigned varint.
+ */
+public final class PatternCodec {
+
+    /**
+     * Largest number of slots a grid can have to use the {@code long} encoding
+     */
+    public static final int MAX_LONG_SLOTS = 16;
+
+    private static final int LONG_NODES = 15;
+    private static final int LENGTH_SHIFT = 60;
+
+    private PatternCodec() {
+    }
+
+    /**
+     * @param slotCount number of slots in the grid
+     * @return true if patterns of this grid fit in the {@code long} encoding
+     */
+    public static boolean fitsInLong(int slotCount) {
+        return slotCount <= MAX_LONG_SLOTS;
+    }
+
+    /**
+     * Encode a pattern of a grid with up to 16 slots into a {@code long}
+     *
+     * @param pattern slot indexes in the order they were connected
+     * @param length  number of slots, from 1 to 16
+     * @return the encoded pattern
+     */
+    public static long encodeLong(int[] pattern, int length) {
+        checkLongLength(length);
+        long code = (long) (length - 1) << LENGTH_SHIFT;
+        int stored = Math.min(length, LONG_NODES);
+        int seen = 0;
+        for (int i = 0; i < stored; i++) {
+            int slot = pattern[i];
+            if (slot < 0 || slot >= MAX_LONG_SLOTS) {
+                throw new IllegalArgumentException("Slot " + slot + " does not fit in 4 bits");
+            }
+            seen |= 1 << slot;
+            code |= (long) slot << (4 * i);
+        }
+        if (length == MAX_LONG_SLOTS) {
+            // the last slot is not stored, it has to be the one the others leave out
+            int missing = Integer.numberOfTrailingZeros(~seen);
+            if (Integer.bitCount(seen) != LONG_NODES || pattern[LONG_NODES] != missing) {
+                throw new IllegalArgumentException("A full pattern has to connect every slot once");
+            }
+        }
+        return code;
+    }
+
+    /**
+     * @see #encodeLong(int[], int)
+     */
+    public static long encodeLong(PatternPath path) {
+        int length = path.size();
+        checkLongLength(length);
+        int[] pattern = new int[MAX_LONG_SLOTS];
+        path.copyTo(pattern);
+        return encodeLong(pattern, length);
+    }
+
+    private static void checkLongLength(int length) {
+        if (length < 1 || length > MAX_LONG_SLOTS) {
+            throw new IllegalArgumentException("Pattern length " + length + " does not fit in a long");
+        }
+    }
+
+    /**
+     * Decode a pattern encoded by {@link #encodeLong(int[], int)}
+     *
+     * @param code    the encoded pattern
+     * @param pattern receives the slot indexes, at least 16 elements
+     * @return number of slots
+     */
+    public static int decodeLong(long code, int[] pattern) {
+        int length = (int) (code >>> LENGTH_SHIFT) + 1;
+        int stored = Math.min(length, LONG_NODES);
+        int seen = 0;
+        for (int i = 0; i < stored; i++) {
+            pattern[i] = (int) (code >>> (4 * i)) & 0xF;
+            seen |= 1 << pattern[i];
+        }
+        if (length == MAX_LONG_SLOTS) {
+            pattern[LONG_NODES] = Integer.numberOfTrailingZeros(~seen);
+        }
+        return length;
+    }
+
+    /**
+     * @param slotCount number of slots in the grid
+     * @return largest number of bytes a pattern of this grid encodes into
+     */
+    public static int maxEncodedLength(int slotCount) {
+        return varintLength(slotCount) * (slotCount + 1);
+    }
+
+    /**
+     * Encode a pattern into its byte form
+     *
+     * @param pattern slot indexes in the order they were connected
+     * @param length  number of slots
+     * @return the encoded pattern
+     */
+    public static byte[] encodeBytes(int[] pattern, int length) {
+        int size = varintLength(length);
+        for (int i = 0; i < length; i++) {
+            size += varintLength(pattern[i]);
+        }
+        byte[] out = new byte[size];
+        encodeBytes(pattern, length, out, 0);
+        return out;
+    }
+
+    /**
+     * Encode a pattern into its byte form without allocating
+     *
+     * @param pattern slot indexes in the order they were connected
+     * @param length  number of slots
+     * @param out     destination, see {@link #maxEncodedLength(int)}
+     * @param offset  first byte to write
+     * @return number of bytes written
+     */
+    public static int encodeBytes(int[] pattern, int length, byte[] out, int offset) {
+        int position = writeVarint(length, out, offset);
+        for (int i = 0; i < length; i++) {
+            position = writeVarint(pattern[i], out, position);
+        }
+        return position - offset;
+    }
+
+    /**
+     * Decode a pattern encoded by {@link #encodeBytes(int[], int)}
+     *
+     * @param data    the encoded pattern
+     * @param pattern receives the slot indexes
+     * @return number of slots
+     */
+    public static int decodeBytes(byte[] data, int[] pattern) {
+        int[] position = {0};
+        int length = readVarint(data, position);
+        for (int i = 0; i < length; i++) {
+            pattern[i] = readVarint(data, position);
+        }
+        return length;
+    }
+
+    private static int varintLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static int writeVarint(int value, byte[] out, int position) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    private static int readVarint(byte[] data, int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Fast non-cryptographic hash of a {@code long} encoded pattern, for caches and lookups
+     *
+     * @param code the encoded pattern
+     * @return well mixed 64 bit hash
+     */
+    public static long hash(long code) {
+        // finalizer of MurmurHash3
+        code ^= code >>> 33;
+        code *= 0xff51afd7ed558ccdL;
+        code ^= code >>> 33;
+        code *= 0xc4ceb9fe1a85ec53L;
+        code ^= code >>> 33;
+        return code;
+    }
+
+    /**
+     * Fast non-cryptographic hash of a byte encoded pattern, for caches and lookups
+     *
+     * @param data   the encoded pattern
+     * @param offset first byte
+     * @param length number of bytes
+     * @return well mixed 64 bit hash
+     */
+    public static long hash(byte[] data, int offset, int length) {
+        // FNV-1a, then mixed so short inputs spread over all bits
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= data[i] & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash(hash);
+    }
+
+    /**
+     * Salted, deliberately slow hash of an encoded pattern for storing it (PBKDF2 with HMAC-SHA256)
+     *
+     * @param encoded    the byte encoded pattern
+     * @param salt       random salt stored next to the hash
+     * @param iterations number of iterations, higher is slower
+     * @return 32 byte hash
+     */
+    public static byte[] slowHash(byte[] encoded, byte[] salt, int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("At least one iteration is needed");
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(encoded.length > 0 ? encoded : new byte[1], "HmacSHA256"));
+            // a single PBKDF2 block, the output is exactly one HMAC-SHA256 long
+            mac.update(salt);
+            mac.update(new byte[]{0, 0, 0, 1});
+            byte[] u = mac.doFinal();
+            byte[] result = u.clone();
+            for (int i = 1; i < iterations; i++) {
+                u = mac.doFinal(u);
+                for (int j = 0; j < result.length; j++) {
+                    result[j] ^= u[j];
+                }
+            }
+            return result;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    /**
+     * Compare two byte arrays in time that depends only on the length of the expected one
+     *
+     * @param expected the stored value
+     * @param actual   the value to check
+     * @return true if both arrays are equal
+     */
+    public static boolean constantTimeEquals(byte[] expected, byte[] actual) {
+        int diff = expected.length ^ actual.length;
+        for (int i = 0; i < expected.length; i++) {
+            // the branch only depends on the lengths, never on the contents
+            int value = i < actual.length ? actual[i] : 0;
+            diff |= expected[i] ^ value;
+        }
+        return diff == 0;
+    }
+
+    /**
+     * Compare two {@code long} encoded patterns without branching on their bits
+     *
+     * @param expected the stored value
+     * @param actual   the value to check
+     * @return true if both values are equal
+     */
+    public static boolean constantTimeEquals(long expected, long actual) {
+        long diff = expected ^ actual;
+        return ((diff | -diff) >>> 63) == 0;
+    }
+}
@@ -0,0 +1,322 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * Touch handling of the connect pattern without any dependency on the Android framework.
+ * <p>
+ * The engine hit-tests touch coordinates against a {@link PatternGrid} and keeps track of
+ * the order in which slots were connected.
+ */
+public class PatternEngine {
+
+    private final PatternGrid grid;
+
+    /**
+     * Extra distance around a slot that still counts as touching it
+     */
+    private int touchSize;
+
+    private int touchX;
+    private int touchY;
+    private boolean touching;
+
+    /**
+     * Slots in order they were connected
+     */
+    private final ConnectionPath connectionOrder;
+
+    /**
+     * Slots hit by the last swept segment and where along the segment they were hit
+     */
+    private final int[] sweepSlots;
+    private final float[] sweepPositions;
+
+    /**
+     * Told about every connected slot, null when nobody listens
+     */
+    private PrefixMatcher prefixMatcher;
+    private boolean rejected;
+
+    /**
+     * Slots between every pair of slots, null unless jumped over slots get connected
+     */
+    private JumpTable jumpTable;
+
+    public PatternEngine(PatternGrid grid) {
+        this.grid = grid;
+        connectionOrder = new ConnectionPath(grid.getSlotCount());
+        sweepSlots = new int[grid.getSlotCount()];
+        sweepPositions = new float[grid.getSlotCount()];
+    }
+
+    public PatternGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Set the tolerance added to the slot radius when hit-testing
+     *
+     * @param touchSize size in pixels
+     */
+    public void setTouchSize(int touchSize) {
+        this.touchSize = touchSize;
+    }
+
+    /**
+     * Connect the unconnected slots lying on the straight line between two connected slots,
+     * the way the platform lock screen does, so the pattern does not depend on finger speed
+     *
+     * @param enabled true to connect jumped over slots
+     */
+    public void setConnectIntermediate(boolean enabled) {
+        jumpTable = enabled ? JumpTable.forGrid(grid.getColumns(), grid.getRows()) : null;
+    }
+
+    public boolean isConnectIntermediate() {
+        return jumpTable != null;
+    }
+
+    /**
+     * Report every connected slot to a matcher that can reject the pattern early
+     *
+     * @param prefixMatcher matcher, null to connect slots without asking
+     */
+    public void setPrefixMatcher(PrefixMatcher prefixMatcher) {
+        this.prefixMatcher = prefixMatcher;
+        if (prefixMatcher != null) {
+            prefixMatcher.reset();
+        }
+        rejected = false;
+    }
+
+    /**
+     * Start a new pattern
+     *
+     * @param x touch x coordinate
+     * @param y touch y coordinate
+     * @return true if the touch started on a slot
+     */
+    public boolean onTouchDown(int x, int y) {
+        int slot = hitTest(x, y);
+        if (slot >= 0) {
+            connect(slot);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Continue the pattern, connecting every slot the touch point passed over since the
+     * previous sample, in the order it passed them
+     *
+     * @param x touch x coordinate
+     * @param y touch y coordinate
+     * @return number of newly connected slots
+     */
+    public int onTouchMove(int x, int y) {
+        if (rejected) {
+            setTouchPoint(x, y);
+            return 0;
+        }
+        if (!touching) {
+            int slot = hitTest(x, y);
+            return slot >= 0 ? connect(slot) : 0;
+        }
+        int count = sweep(touchX, touchY, x, y);
+        setTouchPoint(x, y);
+        int added = 0;
+        for (int i = 0; i < count && !rejected; i++) {
+            added += connect(sweepSlots[i]);
+        }
+        return added;
+    }
+
+    /**
+     * Connect a slot, preceded by the slots jumped over to reach it when enabled
+     *
+     * @return number of newly connected slots
+     */
+    private int connect(int slot) {
+        if (connectionOrder.contains(slot)) {
+            return 0;
+        }
+        int added = 0;
+        int size = connectionOrder.size();
+        if (jumpTable != null && size > 0) {
+            int last = connectionOrder.get(size - 1);
+            int end = jumpTable.getEnd(last, slot);
+            for (int i = jumpTable.getStart(last, slot); i < end && !rejected; i++) {
+                int between = jumpTable.getSlot(i);
+                if (grid.isActive(between) && add(between)) {
+                    added++;
+                }
+            }
+            if (rejected) {
+                return added;
+            }
+        }
+        return add(slot) ? added + 1 : added;
+    }
+
+    /**
+     * Connect a single slot and ask the prefix matcher about the longer pattern
+     *
+     * @return true if the slot was not connected before
+     */
+    private boolean add(int slot) {
+        if (!connectionOrder.add(slot)) {
+            return false;
+        }
+        if (prefixMatcher != null && !prefixMatcher.onNodeAdded(slot, connectionOrder.size())) {
+            rejected = true;
+        }
+        return true;
+    }
+
+    /**
+     * Lift the touch point, the connected slots are kept until {@link #reset()}
+     */
+    public void onTouchUp() {
+        touching = false;
+        touchX = 0;
+        touchY = 0;
+    }
+
+    /**
+     * @return true if enough slots are connected to form a pattern, false if it was abandoned
+     */
+    public boolean isPatternEntered() {
+        return connectionOrder.size() > 1;
+    }
+
+    /**
+     * @return true if the prefix matcher rejected the pattern, no more slots get connected
+     */
+    public boolean isRejected() {
+        return rejected;
+    }
+
+    /**
+     * Forget the current pattern and touch point
+     */
+    public void reset() {
+        onTouchUp();
+        connectionOrder.clear();
+        rejected = false;
+        if (prefixMatcher != null) {
+            prefixMatcher.reset();
+        }
+    }
+
+    /**
+     * Replace the current pattern with a stored one, without a touch point and without asking
+     * the prefix matcher
+     *
+     * @param pattern slot indexes in the order they were connected
+     * @param length  number of slots
+     */
+    public void restore(int[] pattern, int length) {
+        reset();
+        for (int i = 0; i < length; i++) {
+            int slot = pattern[i];
+            if (slot >= 0 && slot < grid.getSlotCount() && grid.isActive(slot)) {
+                connectionOrder.add(slot);
+            }
+        }
+    }
+
+    /**
+     * Find the slot under the given touch coordinate and move the touch point there
+     *
+     * @param x touch x coordinate
+     * @param y touch y coordinate
+     * @return slot index or -1 when no slot was hit
+     */
+    public int hitTest(int x, int y) {
+        setTouchPoint(x, y);
+        return grid.findSlot(x, y, grid.getRadius() + touchSize);
+    }
+
+    public boolean hasTouchPoint() {
+        return touching;
+    }
+
+    public int getTouchX() {
+        return touchX;
+    }
+
+    public int getTouchY() {
+        return touchY;
+    }
+
+    public ConnectionPath getPath() {
+        return connectionOrder;
+    }
+
+    public int getConnectedCount() {
+        return connectionOrder.size();
+    }
+
+    public int getConnected(int position) {
+        return connectionOrder.get(position);
+    }
+
+    /**
+     * Find the unconnected slots a segment passes over, sorted by distance from its start
+     *
+     * @return number of slots stored in sweepSlots
+     */
+    private int sweep(int x0, int y0, int x1, int y1) {
+        int hitRadius = grid.getRadius() + touchSize;
+        int firstColumn = grid.getColumnAt(Math.min(x0, x1) - hitRadius);
+        int lastColumn = grid.getColumnAt(Math.max(x0, x1) + hitRadius);
+        int firstRow = grid.getRowAt(Math.min(y0, y1) - hitRadius);
+        int lastRow = grid.getRowAt(Math.max(y0, y1) + hitRadius);
+        int columns = grid.getColumns();
+
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float length2 = dx * dx + dy * dy;
+        float hitRadius2 = (float) hitRadius * hitRadius;
+        int count = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int slot = row * columns + column;
+                if (!grid.isActive(slot) || connectionOrder.contains(slot)) {
+                    continue;
+                }
+                float cx = grid.getCenterX(slot) - x0;
+                float cy = grid.getCenterY(slot) - y0;
+                float t = length2 > 0 ? (cx * dx + cy * dy) / length2 : 0;
+                if (t < 0) {
+                    t = 0;
+                } else if (t > 1) {
+                    t = 1;
+                }
+                float ex = cx - t * dx;
+                float ey = cy - t * dy;
+                if (ex * ex + ey * ey > hitRadius2) {
+                    continue;
+                }
+                // insertion sort, a single segment rarely passes more than a few slots
+                int i = count++;
+                while (i > 0 && sweepPositions[i - 1] > t) {
+                    sweepSlots[i] = sweepSlots[i - 1];
+                    sweepPositions[i] = sweepPositions[i - 1];
+                    i--;
+                }
+                sweepSlots[i] = slot;
+                sweepPositions[i] = t;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Set the position of the touch point
+     */
+    private void setTouchPoint(int x, int y) {
+        touchX = x;
+        touchY = y;
+        touching = true;
+    }
+}
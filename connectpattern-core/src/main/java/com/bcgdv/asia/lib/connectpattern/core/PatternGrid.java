@@ -0,0 +1,259 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * Grid model of the connect pattern: where every slot sits and which slots are in use.
+ * <p>
+ * Slots are laid out in evenly spaced columns and rows and numbered left to right,
+ * top to bottom. On the default 3x3 grid only some of them are active depending on
+ * the number of connectors.
+ */
+public class PatternGrid {
+
+    public static final int SLOT_COUNT = 9;
+
+    /**
+     * Largest number of columns or rows supported
+     */
+    public static final int MAX_SIZE = 12;
+
+    private final int columns;
+    private final int rows;
+
+    /**
+     * Left edge of every slot, allocated once so layout passes never allocate
+     */
+    private final int[] slotLeft;
+
+    /**
+     * Top edge of every slot
+     */
+    private final int[] slotTop;
+
+    /**
+     * Active flag of every slot
+     */
+    private final boolean[] active;
+
+    /**
+     * Array of indexes of slots based on the number of connectors that were chosen
+     */
+    private int[] indexes;
+
+    private int radius;
+    private int diameter;
+    private boolean laidOut;
+
+    /**
+     * Distance between the centres of the first and the last column and row
+     */
+    private int spanX;
+    private int spanY;
+
+    /**
+     * Centre of the content area
+     */
+    private int middleX;
+    private int middleY;
+
+    /**
+     * Create the default 3x3 grid
+     */
+    public PatternGrid() {
+        this(3, 3);
+    }
+
+    /**
+     * Create a grid with every slot active
+     *
+     * @param columns number of columns
+     * @param rows    number of rows
+     */
+    public PatternGrid(int columns, int rows) {
+        if (columns < 1 || rows < 1 || columns > MAX_SIZE || rows > MAX_SIZE) {
+            throw new IllegalArgumentException("Grid size must be between 1x1 and " + MAX_SIZE + "x" + MAX_SIZE);
+        }
+        this.columns = columns;
+        this.rows = rows;
+        int count = columns * rows;
+        slotLeft = new int[count];
+        slotTop = new int[count];
+        active = new boolean[count];
+        indexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = i;
+        }
+        setIndexes(indexes);
+    }
+
+    /**
+     * Select which slots of the 3x3 grid are active
+     *
+     * @param numbersOfConnectors 2, 3, 5 or 9, any other value keeps the current slots
+     */
+    public void setNumberOfConnectors(int numbersOfConnectors) {
+        if (columns != 3 || rows != 3) {
+            return;
+        }
+        switch (numbersOfConnectors) {
+            case 2:
+                setIndexes(new int[]{0, 2});
+                break;
+            case 3:
+                setIndexes(new int[]{0, 2, 4});
+                break;
+            case 5:
+                setIndexes(new int[]{0, 2, 4, 6, 8});
+                break;
+            case 9:
+                setIndexes(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8});
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void setIndexes(int[] indexes) {
+        this.indexes = indexes;
+        for (int i = 0; i < active.length; i++) {
+            active[i] = false;
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            active[indexes[i]] = true;
+        }
+    }
+
+    /**
+     * Lay the slots out inside the given bounds
+     *
+     * @param leftX   left edge of the content area
+     * @param topY    top edge of the content area
+     * @param rightX  right edge of the content area
+     * @param bottomY bottom edge of the content area
+     * @param radius  radius of a single slot
+     */
+    public void layout(int leftX, int topY, int rightX, int bottomY, int radius) {
+        this.radius = radius;
+        this.diameter = radius * 2;
+        middleX = leftX + (rightX - leftX) / 2;
+        middleY = topY + (bottomY - topY) / 2;
+        int freeWidth = rightX - leftX - diameter;
+        int freeHeight = bottomY - topY - diameter;
+        spanX = freeWidth;
+        spanY = freeHeight;
+
+        for (int i = 0; i < slotLeft.length; i++) {
+            int column = i % columns;
+            int row = i / columns;
+            slotLeft[i] = columns > 1 ? leftX + freeWidth * column / (columns - 1) : leftX + freeWidth / 2;
+            slotTop[i] = rows > 1 ? topY + freeHeight * row / (rows - 1) : topY + freeHeight / 2;
+        }
+        laidOut = true;
+    }
+
+    /**
+     * Find the active slot whose centre is within the given distance of a point.
+     * <p>
+     * The point is mapped to the nearest column and row with arithmetic, so the cost
+     * does not depend on the size of the grid.
+     *
+     * @param x         x coordinate
+     * @param y         y coordinate
+     * @param hitRadius maximum distance from the slot centre
+     * @return slot index or -1 when no slot was hit
+     */
+    public int findSlot(int x, int y, int hitRadius) {
+        if (!laidOut) {
+            return -1;
+        }
+        int slot = getRowAt(y) * columns + getColumnAt(x);
+        if (!active[slot]) {
+            return -1;
+        }
+        long dx = x - getCenterX(slot);
+        long dy = y - getCenterY(slot);
+        return dx * dx + dy * dy <= (long) hitRadius * hitRadius ? slot : -1;
+    }
+
+    /**
+     * @param x x coordinate
+     * @return nearest column, clamped to the grid
+     */
+    public int getColumnAt(int x) {
+        return nearest(x - getCenterX(0), spanX, columns);
+    }
+
+    /**
+     * @param y y coordinate
+     * @return nearest row, clamped to the grid
+     */
+    public int getRowAt(int y) {
+        return nearest(y - getCenterY(0), spanY, rows);
+    }
+
+    /**
+     * Nearest cell along one axis, clamped to the grid
+     */
+    private static int nearest(int offset, int span, int count) {
+        if (count == 1 || span <= 0 || offset <= 0) {
+            return 0;
+        }
+        int cell = (2 * offset * (count - 1) + span) / (2 * span);
+        return cell < count ? cell : count - 1;
+    }
+
+    public boolean isLaidOut() {
+        return laidOut;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getSlotCount() {
+        return slotLeft.length;
+    }
+
+    public int[] getIndexes() {
+        return indexes;
+    }
+
+    public boolean isActive(int slot) {
+        return active[slot];
+    }
+
+    public int getMiddleX() {
+        return middleX;
+    }
+
+    public int getMiddleY() {
+        return middleY;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public int getDiameter() {
+        return diameter;
+    }
+
+    public int getLeft(int slot) {
+        return slotLeft[slot];
+    }
+
+    public int getTop(int slot) {
+        return slotTop[slot];
+    }
+
+    public int getCenterX(int slot) {
+        return slotLeft[slot] + radius;
+    }
+
+    public int getCenterY(int slot) {
+        return slotTop[slot] + radius;
+    }
+}
@@ -0,0 +1,193 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * Opt-in measurements of the touch and draw paths of a pattern view, aggregated into
+ * fixed histograms and counters that the host can poll and export.
+ * <p>
+ * All times are in nanoseconds. Recording never allocates. Values are written on the
+ * thread handling touches and drawing, read them on the same thread.
+ */
+public class PatternMetrics {
+
+    /**
+     * Buckets for the time spent handling a touch event or drawing a frame, 25 us to 32 ms
+     */
+    private static final long[] DURATION_BOUNDS = {
+            25000, 50000, 100000, 250000, 500000, 1000000, 2000000, 4000000, 8000000, 16000000, 32000000
+    };
+
+    /**
+     * Buckets for the time between a touch event and the frame showing it, 4 ms to 250 ms
+     */
+    private static final long[] LATENCY_BOUNDS = {
+            4000000, 8000000, 12000000, 16000000, 24000000, 33000000, 50000000, 66000000, 100000000, 250000000
+    };
+
+    private static final long DEFAULT_FRAME_PERIOD = 16666667;
+
+    private final Histogram touchTime = new Histogram(DURATION_BOUNDS);
+    private final Histogram drawTime = new Histogram(DURATION_BOUNDS);
+    private final Histogram touchToDraw = new Histogram(LATENCY_BOUNDS);
+
+    private long framePeriod = DEFAULT_FRAME_PERIOD;
+    private long lastAnimationFrame;
+
+    private long touchEvents;
+    private long touchBatches;
+    private long samples;
+    private long nodes;
+    private long invalidations;
+    private long frames;
+    private long animationFrames;
+    private long droppedFrames;
+
+    /**
+     * @param framePeriod time between two display frames, 16.7 ms by default
+     */
+    public void setFramePeriod(long framePeriod) {
+        this.framePeriod = framePeriod;
+    }
+
+    public long getFramePeriod() {
+        return framePeriod;
+    }
+
+    /**
+     * @param duration time spent handling the event
+     * @param samples  number of samples in the event, historical ones included
+     * @param nodes    number of slots connected by the event
+     */
+    public void recordTouchEvent(long duration, int samples, int nodes) {
+        touchTime.record(duration);
+        touchEvents++;
+        this.samples += samples;
+        this.nodes += nodes;
+    }
+
+    /**
+     * Record the processing of move events that were queued for a display frame. The events
+     * themselves were recorded with no connected slots when they arrived.
+     *
+     * @param duration time spent processing the queued samples
+     * @param nodes    number of slots they connected
+     */
+    public void recordTouchBatch(long duration, int nodes) {
+        touchTime.record(duration);
+        touchBatches++;
+        this.nodes += nodes;
+    }
+
+    public void recordInvalidation() {
+        invalidations++;
+    }
+
+    /**
+     * @param duration time spent drawing the frame
+     * @param latency  time since the oldest touch event the frame shows, negative if it shows none
+     */
+    public void recordDraw(long duration, long latency) {
+        drawTime.record(duration);
+        frames++;
+        if (latency >= 0) {
+            touchToDraw.record(latency);
+        }
+    }
+
+    /**
+     * Count a frame of a running animation, frames missing since the previous one count as dropped
+     *
+     * @param frameTime time of the frame
+     */
+    public void recordAnimationFrame(long frameTime) {
+        if (lastAnimationFrame != 0 && framePeriod > 0) {
+            // a frame arriving more than half a period late means at least one was skipped
+            long missed = (frameTime - lastAnimationFrame + framePeriod / 2) / framePeriod - 1;
+            if (missed > 0) {
+                droppedFrames += missed;
+            }
+        }
+        lastAnimationFrame = frameTime;
+        animationFrames++;
+    }
+
+    /**
+     * Forget the previous frame time when an animation ends, pauses between animations are not drops
+     */
+    public void endAnimation() {
+        lastAnimationFrame = 0;
+    }
+
+    /**
+     * Forget all measurements
+     */
+    public void reset() {
+        touchTime.reset();
+        drawTime.reset();
+        touchToDraw.reset();
+        lastAnimationFrame = 0;
+        touchEvents = 0;
+        touchBatches = 0;
+        samples = 0;
+        nodes = 0;
+        invalidations = 0;
+        frames = 0;
+        animationFrames = 0;
+        droppedFrames = 0;
+    }
+
+    /**
+     * @return time spent in onTouchEvent and in processing queued move events
+     */
+    public Histogram getTouchTime() {
+        return touchTime;
+    }
+
+    /**
+     * @return time spent in onDraw
+     */
+    public Histogram getDrawTime() {
+        return drawTime;
+    }
+
+    /**
+     * @return time from a touch event to the start of the frame showing it
+     */
+    public Histogram getTouchToDraw() {
+        return touchToDraw;
+    }
+
+    public long getTouchEvents() {
+        return touchEvents;
+    }
+
+    /**
+     * @return number of display frames that processed queued move events
+     */
+    public long getTouchBatches() {
+        return touchBatches;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getAnimationFrames() {
+        return animationFrames;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+}
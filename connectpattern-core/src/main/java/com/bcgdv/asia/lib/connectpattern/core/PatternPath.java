@@ -0,0 +1,35 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * Read-only view of the slots connected so far, in the order they were connected.
+ * <p>
+ * The view is backed by the engine and is only valid until the next pattern starts,
+ * copy it with {@link #copyTo(int[])} to keep it around.
+ */
+public interface PatternPath {
+
+    /**
+     * @return number of connected slots
+     */
+    int size();
+
+    /**
+     * @param position position in the path, from 0 to {@link #size()} - 1
+     * @return slot index connected at the given position
+     */
+    int get(int position);
+
+    /**
+     * @param slot slot index
+     * @return true if the slot is part of the path
+     */
+    boolean contains(int slot);
+
+    /**
+     * Copy the connected slots into an array
+     *
+     * @param destination array of at least {@link #size()} elements
+     * @return number of copied slots
+     */
+    int copyTo(int[] destination);
+}
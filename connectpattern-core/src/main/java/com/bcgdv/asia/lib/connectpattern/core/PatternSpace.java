@@ -0,0 +1,332 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Number of valid patterns of every length on a grid, for strength scores and minimum
+ * entropy policies.
+ * <p>
+ * Patterns are counted with dynamic programming over the set of connected slots and the
+ * last connected slot: the number of patterns ending in a state is the sum over the states
+ * it can be reached from. Sets of the same size do not depend on each other, so large grids
+ * compute every size in parallel. Only the counts are kept, grids are limited to
+ * {@link #MAX_SLOTS} active slots to bound the memory of the computation.
+ */
+public class PatternSpace {
+
+    /**
+     * Any unconnected slot can follow
+     */
+    public static final int RULE_ANY = 0;
+
+    /**
+     * A line can only pass over connected slots, like the platform lock screen
+     */
+    public static final int RULE_NO_SKIP = 1;
+
+    /**
+     * Largest number of active slots that can be counted
+     */
+    public static final int MAX_SLOTS = 16;
+
+    /**
+     * Grids with more active slots than this are counted on a pool of background threads
+     */
+    private static final int PARALLEL_SLOTS = 10;
+
+    /**
+     * Number of sets handled by a single task, at most 16 tasks per set size
+     */
+    private static final int TASK_SIZE = 1 << (MAX_SLOTS - 4);
+
+    private static final Map<String, PatternSpace> sSpaces = new HashMap<>();
+    private static ExecutorService sPool;
+
+    /**
+     * Grid slot of every active slot
+     */
+    private final int[] slots;
+
+    /**
+     * Active slot index of every grid slot, -1 for inactive slots
+     */
+    private final int[] positions;
+
+    /**
+     * Active slots that must be connected before a line can go from one slot to another,
+     * indexed by from * count + to
+     */
+    private final int[] required;
+
+    /**
+     * Number of patterns of every length, indexed by length
+     */
+    private final long[] counts;
+
+    /**
+     * @param grid grid whose active slots are used
+     * @param rule {@link #RULE_ANY} or {@link #RULE_NO_SKIP}
+     * @return counts of the configuration, shared and computed only once
+     */
+    public static PatternSpace forGrid(PatternGrid grid, int rule) {
+        String key = grid.getColumns() + "x" + grid.getRows() + ":" + rule;
+        for (int i = 0; i < grid.getSlotCount(); i++) {
+            if (grid.isActive(i)) {
+                key += "," + i;
+            }
+        }
+        synchronized (sSpaces) {
+            PatternSpace space = sSpaces.get(key);
+            if (space == null) {
+                space = new PatternSpace(grid, rule);
+                sSpaces.put(key, space);
+            }
+            return space;
+        }
+    }
+
+    /**
+     * Count the patterns of a grid without looking at the shared results
+     *
+     * @param grid grid whose active slots are used
+     * @param rule {@link #RULE_ANY} or {@link #RULE_NO_SKIP}
+     */
+    public PatternSpace(PatternGrid grid, int rule) {
+        int count = 0;
+        positions = new int[grid.getSlotCount()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = grid.isActive(i) ? count++ : -1;
+        }
+        if (count > MAX_SLOTS) {
+            throw new IllegalArgumentException(count + " active slots, at most " + MAX_SLOTS + " can be counted");
+        }
+        slots = new int[count];
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] >= 0) {
+                slots[positions[i]] = i;
+            }
+        }
+
+        required = new int[count * count];
+        if (rule == RULE_NO_SKIP) {
+            JumpTable table = JumpTable.forGrid(grid.getColumns(), grid.getRows());
+            for (int from = 0; from < count; from++) {
+                for (int to = 0; to < count; to++) {
+                    int mask = 0;
+                    int end = table.getEnd(slots[from], slots[to]);
+                    for (int i = table.getStart(slots[from], slots[to]); i < end; i++) {
+                        int between = positions[table.getSlot(i)];
+                        if (between >= 0) {
+                            mask |= 1 << between;
+                        }
+                    }
+                    required[from * count + to] = mask;
+                }
+            }
+        }
+        counts = count(count);
+    }
+
+    /**
+     * Fill the table of patterns ending in every state one set size after the other
+     */
+    private long[] count(int count) {
+        long[] result = new long[count + 1];
+        if (count == 0) {
+            return result;
+        }
+        long[] ways = new long[(1 << count) * count];
+        for (int i = 0; i < count; i++) {
+            ways[(1 << i) * count + i] = 1;
+        }
+        result[1] = count;
+        for (int size = 2; size <= count; size++) {
+            if (count > PARALLEL_SLOTS) {
+                result[size] = countSizeInParallel(ways, count, size);
+            } else {
+                result[size] = countSize(ways, count, size, 0, 1 << count);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Count the patterns ending in every state whose set has the given size and lies in a range
+     *
+     * @return number of patterns of this size in the range
+     */
+    private long countSize(long[] ways, int count, int size, int fromSet, int toSet) {
+        long total = 0;
+        for (int set = fromSet; set < toSet; set++) {
+            if (Integer.bitCount(set) != size) {
+                continue;
+            }
+            for (int lasts = set; lasts != 0; lasts &= lasts - 1) {
+                int last = Integer.numberOfTrailingZeros(lasts);
+                int previousSet = set & ~(1 << last);
+                long sum = 0;
+                for (int previous = previousSet; previous != 0; previous &= previous - 1) {
+                    int from = Integer.numberOfTrailingZeros(previous);
+                    if ((required[from * count + last] & ~previousSet) == 0) {
+                        sum += ways[previousSet * count + from];
+                    }
+                }
+                ways[set * count + last] = sum;
+                total += sum;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Count one set size with one task per range of sets, every set only reads smaller ones
+     */
+    private long countSizeInParallel(long[] ways, int count, int size) {
+        List<Callable<Long>> tasks = new ArrayList<>();
+        int sets = 1 << count;
+        for (int from = 0; from < sets; from += TASK_SIZE) {
+            tasks.add(new SizeTask(ways, count, size, from, Math.min(from + TASK_SIZE, sets)));
+        }
+        long total = 0;
+        try {
+            for (Future<Long> future : getPool().invokeAll(tasks)) {
+                total += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting patterns", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Counting patterns failed", e.getCause());
+        }
+        return total;
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (sPool == null) {
+            sPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "PatternSpace");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sPool;
+    }
+
+    /**
+     * Counts one set size over a range of sets
+     */
+    private class SizeTask implements Callable<Long> {
+
+        private final long[] ways;
+        private final int count;
+        private final int size;
+        private final int fromSet;
+        private final int toSet;
+
+        SizeTask(long[] ways, int count, int size, int fromSet, int toSet) {
+            this.ways = ways;
+            this.count = count;
+            this.size = size;
+            this.fromSet = fromSet;
+            this.toSet = toSet;
+        }
+
+        @Override
+        public Long call() {
+            return countSize(ways, count, size, fromSet, toSet);
+        }
+    }
+
+    /**
+     * @return number of active slots, the longest possible pattern
+     */
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    /**
+     * @param length number of connected slots
+     * @return number of valid patterns of exactly this length
+     */
+    public long getCount(int length) {
+        return length < 1 || length >= counts.length ? 0 : counts[length];
+    }
+
+    /**
+     * @param minLength shortest accepted pattern
+     * @return number of valid patterns at least this long
+     */
+    public long getTotal(int minLength) {
+        long total = 0;
+        for (int length = Math.max(minLength, 1); length < counts.length; length++) {
+            total += counts[length];
+        }
+        return total;
+    }
+
+    /**
+     * @param minLength shortest accepted pattern
+     * @return bits needed to pick one of the accepted patterns, if all were equally likely
+     */
+    public double getEntropyBits(int minLength) {
+        long total = getTotal(minLength);
+        return total > 0 ? Math.log(total) / Math.log(2) : 0;
+    }
+
+    /**
+     * @param pattern grid slot indexes in the order they were connected
+     * @param length  number of slots
+     * @return true if the pattern only uses active slots, once each, and follows the rule
+     */
+    public boolean isValid(int[] pattern, int length) {
+        return scoreBits(pattern, length) >= 0;
+    }
+
+    /**
+     * Strength of a single pattern: the sum over its slots of the bits needed to pick that
+     * slot among all slots that could have been connected at that point
+     *
+     * @param pattern grid slot indexes in the order they were connected
+     * @param length  number of slots
+     * @return strength in bits or -1 if the pattern is not valid
+     */
+    public double scoreBits(int[] pattern, int length) {
+        int set = 0;
+        int last = -1;
+        double bits = 0;
+        for (int i = 0; i < length; i++) {
+            int slot = pattern[i];
+            int position = slot >= 0 && slot < positions.length ? positions[slot] : -1;
+            if (position < 0 || (set & (1 << position)) != 0
+                    || (last >= 0 && !canConnect(set, last, position))) {
+                return -1;
+            }
+            int choices = 0;
+            for (int next = 0; next < slots.length; next++) {
+                if ((set & (1 << next)) == 0 && (last < 0 || canConnect(set, last, next))) {
+                    choices++;
+                }
+            }
+            bits += Math.log(choices) / Math.log(2);
+            set |= 1 << position;
+            last = position;
+        }
+        return bits;
+    }
+
+    private boolean canConnect(int set, int from, int to) {
+        return (required[from * slots.length + to] & ~set) == 0;
+    }
+}
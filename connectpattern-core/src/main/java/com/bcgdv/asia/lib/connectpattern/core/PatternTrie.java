@@ -0,0 +1,278 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import java.util.Arrays;
+
+/**
+ * Immutable prefix trie over patterns, for matching one pattern against a very large set
+ * of stored ones.
+ * <p>
+ * Nodes are numbered breadth first so the children of a node are consecutive: the trie
+ * is stored in three flat arrays, the first child of every node, the slot leading to
+ * every node and the value stored at every node. Children are sorted by slot, so a lookup
+ * takes one binary search over at most the grid's slot count per connected slot.
+ * Build it with a {@link Builder}.
+ */
+public class PatternTrie {
+
+    /**
+     * Value of nodes that do not end a stored pattern, and result of failed lookups
+     */
+    public static final int NO_VALUE = -1;
+
+    /**
+     * Node returned when a prefix is not part of the trie
+     */
+    public static final int NO_NODE = -1;
+
+    private static final int ROOT = 0;
+
+    /**
+     * Index of the first child of every node, with one extra element closing the last range
+     */
+    private final int[] firstChild;
+
+    /**
+     * Slot connected to reach every node
+     */
+    private final short[] slots;
+
+    /**
+     * Value of the pattern ending at every node, or NO_VALUE
+     */
+    private final int[] values;
+
+    private final int size;
+
+    private PatternTrie(int[] firstChild, short[] slots, int[] values, int size) {
+        this.firstChild = firstChild;
+        this.slots = slots;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * @param pattern slot indexes in the order they were connected
+     * @param length  number of slots
+     * @return value stored for the pattern or {@link #NO_VALUE}
+     */
+    public int get(int[] pattern, int length) {
+        int node = ROOT;
+        for (int i = 0; i < length && node != NO_NODE; i++) {
+            node = getChild(node, pattern[i]);
+        }
+        return node == NO_NODE ? NO_VALUE : values[node];
+    }
+
+    /**
+     * @param path connected slots
+     * @return value stored for the pattern or {@link #NO_VALUE}
+     */
+    public int get(PatternPath path) {
+        int node = ROOT;
+        for (int i = 0; i < path.size() && node != NO_NODE; i++) {
+            node = getChild(node, path.get(i));
+        }
+        return node == NO_NODE ? NO_VALUE : values[node];
+    }
+
+    /**
+     * @return node of the empty prefix
+     */
+    public int getRoot() {
+        return ROOT;
+    }
+
+    /**
+     * Follow one connected slot from a prefix
+     *
+     * @param node node of the prefix
+     * @param slot next connected slot
+     * @return node of the longer prefix or {@link #NO_NODE} if no stored pattern starts with it
+     */
+    public int getChild(int node, int slot) {
+        int low = firstChild[node];
+        int high = firstChild[node + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleSlot = slots[middle];
+            if (middleSlot < slot) {
+                low = middle + 1;
+            } else if (middleSlot > slot) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return NO_NODE;
+    }
+
+    /**
+     * @param node node of a prefix
+     * @return value of the pattern ending at this node or {@link #NO_VALUE}
+     */
+    public int getValue(int node) {
+        return values[node];
+    }
+
+    /**
+     * @param node node of a prefix
+     * @return number of different slots that can follow the prefix
+     */
+    public int getChildCount(int node) {
+        return firstChild[node + 1] - firstChild[node];
+    }
+
+    /**
+     * @return number of stored patterns
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of nodes, including the root
+     */
+    public int getNodeCount() {
+        return values.length;
+    }
+
+    /**
+     * @return approximate number of bytes used by the trie's arrays
+     */
+    public long getMemoryBytes() {
+        return 4L * firstChild.length + 2L * slots.length + 4L * values.length;
+    }
+
+    /**
+     * Collects patterns in a growable linked trie and compacts them into a {@link PatternTrie}
+     */
+    public static class Builder {
+
+        private int[] firstChild;
+        private int[] nextSibling;
+        private short[] slots;
+        private int[] values;
+        private int nodeCount = 1;
+        private int size;
+
+        public Builder() {
+            this(1024);
+        }
+
+        /**
+         * @param expectedNodes expected number of nodes, to avoid growing the arrays while loading
+         */
+        public Builder(int expectedNodes) {
+            int capacity = Math.max(expectedNodes, 16);
+            firstChild = new int[capacity];
+            nextSibling = new int[capacity];
+            slots = new short[capacity];
+            values = new int[capacity];
+            firstChild[ROOT] = NO_NODE;
+            nextSibling[ROOT] = NO_NODE;
+            values[ROOT] = NO_VALUE;
+        }
+
+        /**
+         * Store a pattern, replacing the value of an equal pattern added earlier
+         *
+         * @param pattern slot indexes in the order they were connected
+         * @param length  number of slots
+         * @param value   value returned when the pattern is looked up, 0 or more
+         * @return this builder
+         */
+        public Builder add(int[] pattern, int length, int value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Value must not be negative");
+            }
+            int node = ROOT;
+            for (int i = 0; i < length; i++) {
+                node = findOrAddChild(node, pattern[i]);
+            }
+            if (values[node] == NO_VALUE) {
+                size++;
+            }
+            values[node] = value;
+            return this;
+        }
+
+        /**
+         * Store many patterns at once, the value of every pattern is its index
+         *
+         * @param patterns patterns to store
+         * @return this builder
+         */
+        public Builder addAll(int[][] patterns) {
+            for (int i = 0; i < patterns.length; i++) {
+                add(patterns[i], patterns[i].length, i);
+            }
+            return this;
+        }
+
+        /**
+         * Find the child of a node reached by a slot, keeping siblings sorted by slot
+         */
+        private int findOrAddChild(int node, int slot) {
+            int previous = NO_NODE;
+            int child = firstChild[node];
+            while (child != NO_NODE && slots[child] < slot) {
+                previous = child;
+                child = nextSibling[child];
+            }
+            if (child != NO_NODE && slots[child] == slot) {
+                return child;
+            }
+            int added = newNode(slot);
+            nextSibling[added] = child;
+            if (previous == NO_NODE) {
+                firstChild[node] = added;
+            } else {
+                nextSibling[previous] = added;
+            }
+            return added;
+        }
+
+        private int newNode(int slot) {
+            if (nodeCount == values.length) {
+                int capacity = values.length * 2;
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                slots = Arrays.copyOf(slots, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            int node = nodeCount++;
+            firstChild[node] = NO_NODE;
+            nextSibling[node] = NO_NODE;
+            slots[node] = (short) slot;
+            values[node] = NO_VALUE;
+            return node;
+        }
+
+        /**
+         * @return compact trie holding every added pattern
+         */
+        public PatternTrie build() {
+            int[] compactFirstChild = new int[nodeCount + 1];
+            short[] compactSlots = new short[nodeCount];
+            int[] compactValues = new int[nodeCount];
+
+            // breadth first walk, the queue holds builder nodes in their compact order
+            int[] queue = new int[nodeCount];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = ROOT;
+            while (head < tail) {
+                int compact = head;
+                int node = queue[head++];
+                compactSlots[compact] = slots[node];
+                compactValues[compact] = values[node];
+                compactFirstChild[compact] = tail;
+                for (int child = firstChild[node]; child != NO_NODE; child = nextSibling[child]) {
+                    queue[tail++] = child;
+                }
+            }
+            compactFirstChild[nodeCount] = nodeCount;
+            return new PatternTrie(compactFirstChild, compactSlots, compactValues, size);
+        }
+    }
+}
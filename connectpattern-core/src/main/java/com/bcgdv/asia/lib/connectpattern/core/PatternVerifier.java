@@ -0,0 +1,15 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * Checks an entered pattern, for example by deriving a key from it and comparing it
+ * with a stored one. Implementations are called on a background thread.
+ */
+public interface PatternVerifier {
+
+    /**
+     * @param pattern slot indexes in the order they were connected
+     * @return true if the pattern is correct
+     * @throws Exception if the pattern could not be verified, it is then treated as wrong
+     */
+    boolean verify(int[] pattern) throws Exception;
+}
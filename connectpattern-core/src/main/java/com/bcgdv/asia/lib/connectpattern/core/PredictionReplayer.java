@@ -0,0 +1,145 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import java.util.Arrays;
+
+/**
+ * Measures a {@link TouchPredictor} against a recorded {@link GestureTrace}: after every sample
+ * the prediction is compared with where the trace really was one horizon later, and so is the
+ * last sample itself, which is what the view draws without prediction.
+ * <p>
+ * The ratio of both mean errors tells how much of the visible lag prediction removes, and
+ * {@link #getRemainingLag()} turns it into milliseconds.
+ */
+public class PredictionReplayer {
+
+    private final TouchPredictor predictor;
+
+    /**
+     * Samples of the gesture being replayed
+     */
+    private long[] times = new long[64];
+    private float[] xs = new float[64];
+    private float[] ys = new float[64];
+    private int size;
+
+    private int predictions;
+    private double predictedError;
+    private double unpredictedError;
+    private float maxPredictedError;
+
+    public PredictionReplayer(TouchPredictor predictor) {
+        this.predictor = predictor;
+    }
+
+    /**
+     * Replay every gesture of a trace, adding to the results of earlier replays
+     *
+     * @param trace recorded samples
+     * @return number of predictions compared
+     */
+    public int replay(GestureTrace trace) {
+        int before = predictions;
+        GestureTrace.Cursor cursor = trace.newCursor();
+        size = 0;
+        while (cursor.next()) {
+            if (cursor.getAction() == GestureTrace.ACTION_DOWN) {
+                size = 0;
+            }
+            add(cursor.getTime(), cursor.getX(), cursor.getY());
+            int action = cursor.getAction();
+            if (action == GestureTrace.ACTION_UP || action == GestureTrace.ACTION_CANCEL) {
+                evaluateGesture();
+                size = 0;
+            }
+        }
+        return predictions - before;
+    }
+
+    private void add(long time, float x, float y) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        times[size] = time;
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    private void evaluateGesture() {
+        predictor.reset();
+        float horizon = predictor.getHorizon();
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            predictor.addSample(times[i], xs[i], ys[i]);
+            predictor.predict();
+            double target = times[i] + horizon;
+            while (next < size && times[next] < target) {
+                next++;
+            }
+            if (next == size) {
+                // the gesture ended before the horizon
+                break;
+            }
+            float actualX = xs[next];
+            float actualY = ys[next];
+            if (next > 0 && times[next] > target) {
+                float t = (float) ((target - times[next - 1]) / (times[next] - times[next - 1]));
+                actualX = xs[next - 1] + (xs[next] - xs[next - 1]) * t;
+                actualY = ys[next - 1] + (ys[next] - ys[next - 1]) * t;
+            }
+            float error = distance(predictor.getPredictedX(), predictor.getPredictedY(), actualX, actualY);
+            predictedError += error;
+            unpredictedError += distance(xs[i], ys[i], actualX, actualY);
+            maxPredictedError = Math.max(maxPredictedError, error);
+            predictions++;
+        }
+    }
+
+    private static float distance(float x0, float y0, float x1, float y1) {
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @return number of predictions compared so far
+     */
+    public int getPredictionCount() {
+        return predictions;
+    }
+
+    /**
+     * @return mean distance between the prediction and the real position
+     */
+    public double getMeanPredictedError() {
+        return predictions == 0 ? 0 : predictedError / predictions;
+    }
+
+    /**
+     * @return mean distance between the last sample and the real position, the error without prediction
+     */
+    public double getMeanUnpredictedError() {
+        return predictions == 0 ? 0 : unpredictedError / predictions;
+    }
+
+    public float getMaxPredictedError() {
+        return maxPredictedError;
+    }
+
+    /**
+     * @return lag left with prediction in milliseconds, the horizon scaled by the ratio of both errors
+     */
+    public double getRemainingLag() {
+        double unpredicted = getMeanUnpredictedError();
+        return unpredicted == 0 ? 0 : predictor.getHorizon() * getMeanPredictedError() / unpredicted;
+    }
+
+    public void resetResults() {
+        predictions = 0;
+        predictedError = 0;
+        unpredictedError = 0;
+        maxPredictedError = 0;
+    }
+}
@@ -0,0 +1,24 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * Hears about every slot as soon as it is connected, while the pattern is still being drawn.
+ * <p>
+ * Returning false rejects the prefix: no stored pattern can start with it, so the engine stops
+ * connecting slots until the next pattern. Implementations can also use the calls to prepare
+ * the verification of a likely pattern before it is finished. They are called on the thread
+ * handling touches and should return quickly.
+ */
+public interface PrefixMatcher {
+
+    /**
+     * Forget the previous prefix, called whenever a new pattern starts
+     */
+    void reset();
+
+    /**
+     * @param node  index of the newly connected slot
+     * @param depth number of connected slots including this one, 1 for the first slot
+     * @return false if no accepted pattern starts with the slots connected so far
+     */
+    boolean onNodeAdded(int node, int depth);
+}
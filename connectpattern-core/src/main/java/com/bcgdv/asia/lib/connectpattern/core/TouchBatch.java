@@ -0,0 +1,127 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import java.util.Arrays;
+
+/**
+ * Move samples collected between two display frames and handed to a {@link PatternEngine}
+ * in one go, so fast digitisers cause one round of hit-testing and one redraw per frame.
+ * <p>
+ * Every sample is kept in order, including the batched historical ones, so the engine still
+ * sweeps over every circle the finger passed. The buffers grow when a frame is late and are
+ * reused afterwards. Counters compare the touch events received with the frames that
+ * processed them.
+ */
+public class TouchBatch {
+
+    private int[] xs;
+    private int[] ys;
+    private int size;
+
+    private long eventCount;
+    private long sampleCount;
+    private long frameCount;
+
+    public TouchBatch() {
+        this(16);
+    }
+
+    /**
+     * @param capacity expected number of samples per frame
+     */
+    public TouchBatch(int capacity) {
+        xs = new int[Math.max(capacity, 1)];
+        ys = new int[xs.length];
+    }
+
+    /**
+     * Count one touch event, its samples are added with {@link #add(int, int)}
+     */
+    public void onEvent() {
+        eventCount++;
+    }
+
+    /**
+     * Queue one sample
+     *
+     * @param x horizontal position
+     * @param y vertical position
+     */
+    public void add(int x, int y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+        sampleCount++;
+    }
+
+    /**
+     * @return true if samples wait for the next frame
+     */
+    public boolean isPending() {
+        return size > 0;
+    }
+
+    /**
+     * Feed the queued samples to the engine in the order they were added and empty the batch.
+     * Counts a processed frame if there was anything to process.
+     *
+     * @param engine engine receiving the samples
+     * @return number of samples processed
+     */
+    public int drainTo(PatternEngine engine) {
+        int drained = size;
+        if (drained == 0) {
+            return 0;
+        }
+        for (int i = 0; i < drained; i++) {
+            engine.onTouchMove(xs[i], ys[i]);
+        }
+        size = 0;
+        frameCount++;
+        return drained;
+    }
+
+    /**
+     * Drop the queued samples without processing them
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return number of samples waiting for the next frame
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of touch events received since the last {@link #resetCounters()}
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return number of samples received, historical ones included
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return number of frames that processed samples
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public void resetCounters() {
+        eventCount = 0;
+        sampleCount = 0;
+        frameCount = 0;
+    }
+}
@@ -0,0 +1,156 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * Extrapolates where the finger will be a little after the last touch sample, so the line
+ * following the finger can be drawn where the finger is when the frame reaches the screen
+ * instead of where it was when the sample was taken.
+ * <p>
+ * The prediction continues the velocity of the last two samples and the change of velocity
+ * over the last three, and is clamped to a maximum distance from the last sample. Samples
+ * further apart than {@link #MAX_SAMPLE_INTERVAL} start over, a finger that rested is not
+ * extrapolated. Predictions are for drawing only, never feed them to a {@link PatternEngine}.
+ */
+public class TouchPredictor {
+
+    /**
+     * Longest time between two samples, in milliseconds, that still counts as one movement
+     */
+    public static final long MAX_SAMPLE_INTERVAL = 50;
+
+    /**
+     * Last three samples, oldest first
+     */
+    private final long[] times = new long[3];
+    private final float[] xs = new float[3];
+    private final float[] ys = new float[3];
+    private int count;
+
+    private float horizon;
+    private float maxDistance;
+
+    private float predictedX;
+    private float predictedY;
+
+    /**
+     * @param horizon     how far ahead to predict, in milliseconds
+     * @param maxDistance longest distance from the last sample a prediction may reach
+     */
+    public TouchPredictor(float horizon, float maxDistance) {
+        setHorizon(horizon);
+        setMaxDistance(maxDistance);
+    }
+
+    /**
+     * @param horizon how far ahead to predict, in milliseconds, usually one or two frames
+     */
+    public void setHorizon(float horizon) {
+        if (horizon < 0) {
+            throw new IllegalArgumentException("Horizon must not be negative");
+        }
+        this.horizon = horizon;
+    }
+
+    public float getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * @param maxDistance longest distance from the last sample a prediction may reach
+     */
+    public void setMaxDistance(float maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Maximum distance must not be negative");
+        }
+        this.maxDistance = maxDistance;
+    }
+
+    public float getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * Forget the samples of the previous gesture
+     */
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * Add a real touch sample, in the order they were taken
+     *
+     * @param timeMillis time of the sample
+     * @param x          horizontal position
+     * @param y          vertical position
+     */
+    public void addSample(long timeMillis, float x, float y) {
+        if (count > 0) {
+            long last = times[count - 1];
+            if (timeMillis <= last) {
+                // same instant, keep the newer position
+                count--;
+            } else if (timeMillis - last > MAX_SAMPLE_INTERVAL) {
+                count = 0;
+            }
+        }
+        if (count == times.length) {
+            for (int i = 1; i < count; i++) {
+                times[i - 1] = times[i];
+                xs[i - 1] = xs[i];
+                ys[i - 1] = ys[i];
+            }
+            count--;
+        }
+        times[count] = timeMillis;
+        xs[count] = x;
+        ys[count] = y;
+        count++;
+    }
+
+    /**
+     * Predict the position {@link #getHorizon()} after the last sample. Without a sample the
+     * prediction is left unchanged.
+     *
+     * @return true if the prediction differs from the last sample
+     */
+    public boolean predict() {
+        if (count == 0) {
+            return false;
+        }
+        int last = count - 1;
+        predictedX = xs[last];
+        predictedY = ys[last];
+        if (count < 2 || horizon == 0) {
+            return false;
+        }
+        float dt1 = times[last] - times[last - 1];
+        float vx = (xs[last] - xs[last - 1]) / dt1;
+        float vy = (ys[last] - ys[last - 1]) / dt1;
+        float dx = vx * horizon;
+        float dy = vy * horizon;
+        if (count == 3) {
+            float dt0 = times[1] - times[0];
+            float ax = (vx - (xs[1] - xs[0]) / dt0) * 2 / (dt1 + dt0);
+            float ay = (vy - (ys[1] - ys[0]) / dt0) * 2 / (dt1 + dt0);
+            float half = horizon * horizon / 2;
+            dx += ax * half;
+            dy += ay * half;
+        }
+        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+        if (distance > maxDistance) {
+            float scale = maxDistance / distance;
+            dx *= scale;
+            dy *= scale;
+        }
+        predictedX += dx;
+        predictedY += dy;
+        return dx != 0 || dy != 0;
+    }
+
+    public float getPredictedX() {
+        return predictedX;
+    }
+
+    public float getPredictedY() {
+        return predictedY;
+    }
+}
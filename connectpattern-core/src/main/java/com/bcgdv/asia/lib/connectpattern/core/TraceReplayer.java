@@ -0,0 +1,72 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * Feeds a recorded {@link GestureTrace} into a {@link PatternEngine} the way the view
+ * handles touch events, so recorded gestures can be replayed without a device.
+ */
+public class TraceReplayer {
+
+    /**
+     * Called after every replayed gesture
+     */
+    public interface Listener {
+        /**
+         * @param engine engine holding the pattern of the gesture until the next one starts
+         */
+        void onGestureReplayed(PatternEngine engine);
+    }
+
+    private final PatternEngine engine;
+    private Listener listener;
+
+    public TraceReplayer(PatternEngine engine) {
+        this.engine = engine;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Replay every gesture of a trace
+     *
+     * @param trace recorded samples
+     * @return number of samples replayed
+     */
+    public int replay(GestureTrace trace) {
+        GestureTrace.Cursor cursor = trace.newCursor();
+        int samples = 0;
+        boolean started = false;
+        while (cursor.next()) {
+            samples++;
+            int x = (int) cursor.getX();
+            int y = (int) cursor.getY();
+            switch (cursor.getAction()) {
+                case GestureTrace.ACTION_DOWN:
+                    engine.reset();
+                    started = engine.onTouchDown(x, y);
+                    break;
+                case GestureTrace.ACTION_MOVE:
+                    if (started) {
+                        engine.onTouchMove(x, y);
+                    }
+                    break;
+                case GestureTrace.ACTION_UP:
+                    if (started) {
+                        engine.onTouchMove(x, y);
+                        engine.onTouchUp();
+                        if (listener != null) {
+                            listener.onGestureReplayed(engine);
+                        }
+                    }
+                    started = false;
+                    break;
+                default:
+                    engine.reset();
+                    started = false;
+                    break;
+            }
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,52 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+/**
+ * {@link PrefixMatcher} walking a {@link PatternTrie} one node per connected slot, so a
+ * prefix no stored pattern starts with is rejected at once and the match of a finished
+ * pattern is known without another lookup.
+ */
+public class TriePrefixMatcher implements PrefixMatcher {
+
+    private final PatternTrie trie;
+    private int node;
+
+    public TriePrefixMatcher(PatternTrie trie) {
+        this.trie = trie;
+        this.node = trie.getRoot();
+    }
+
+    @Override
+    public void reset() {
+        node = trie.getRoot();
+    }
+
+    @Override
+    public boolean onNodeAdded(int slot, int depth) {
+        if (node != PatternTrie.NO_NODE) {
+            node = trie.getChild(node, slot);
+        }
+        return node != PatternTrie.NO_NODE;
+    }
+
+    /**
+     * @return trie node of the slots connected so far or {@link PatternTrie#NO_NODE} if rejected
+     */
+    public int getNode() {
+        return node;
+    }
+
+    /**
+     * @return value of the stored pattern equal to the slots connected so far or
+     * {@link PatternTrie#NO_VALUE}
+     */
+    public int getValue() {
+        return node == PatternTrie.NO_NODE ? PatternTrie.NO_VALUE : trie.getValue(node);
+    }
+
+    /**
+     * @return number of slots that can still follow without rejecting the prefix
+     */
+    public int getCandidateCount() {
+        return node == PatternTrie.NO_NODE ? 0 : trie.getChildCount(node);
+    }
+}
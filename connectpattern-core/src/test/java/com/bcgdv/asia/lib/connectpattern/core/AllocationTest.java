@@ -0,0 +1,189 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Drives scripted gestures and animation frames through the core and fails if the touch
+ * or per-frame paths allocate once warmed up. The build runs these tests with escape
+ * analysis off, so allocations the JIT would hide but ART would not are still counted.
+ * The view itself is covered on a device by {@code ViewAllocationTest}.
+ */
+public class AllocationTest {
+
+    private static final int WARM_UP = 20000;
+    private static final int MEASURED = 2000;
+
+    private com.sun.management.ThreadMXBean threads;
+
+    private PatternEngine engine;
+    private PatternAnimation animation;
+    private DirtyRegion dirty;
+    private PatternMetrics metrics;
+    private GestureTrace trace;
+    private TouchBatch batch;
+    private int[] left;
+    private int[] top;
+
+    @Before
+    public void setUp() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        PatternGrid grid = new PatternGrid(12, 12);
+        grid.layout(0, 0, 1140, 1140, 20);
+        engine = new PatternEngine(grid);
+        engine.setTouchSize(5);
+        engine.setConnectIntermediate(true);
+        engine.setPrefixMatcher(new PrefixMatcher() {
+            @Override
+            public void reset() {
+            }
+
+            @Override
+            public boolean onNodeAdded(int node, int depth) {
+                return true;
+            }
+        });
+
+        animation = new PatternAnimation(grid.getSlotCount());
+        dirty = new DirtyRegion();
+        metrics = new PatternMetrics();
+        trace = new GestureTrace(4096);
+        batch = new TouchBatch();
+        left = new int[grid.getSlotCount()];
+        top = new int[grid.getSlotCount()];
+    }
+
+    /**
+     * A zigzag gesture over the grid with the work the view does for every move event
+     */
+    private final Runnable gesture = new Runnable() {
+        private long time;
+
+        @Override
+        public void run() {
+            engine.reset();
+            trace.record(GestureTrace.ACTION_DOWN, time, 20, 20);
+            engine.onTouchDown(20, 20);
+            for (int i = 1; i <= 24; i++) {
+                int x = i % 2 == 0 ? 20 : 1120;
+                int y = 20 + i * 45;
+                trace.recordHistorical(time + i, x, y - 20);
+                trace.record(GestureTrace.ACTION_MOVE, time + i, x, y);
+                int connected = engine.getConnectedCount();
+                int previousX = engine.getTouchX();
+                int previousY = engine.getTouchY();
+                engine.onTouchMove(x, y - 20);
+                engine.onTouchMove(x, y);
+                dirty.addSegment(previousX, previousY, x, y, 4);
+                for (int j = connected; j < engine.getConnectedCount(); j++) {
+                    int slot = engine.getConnected(j);
+                    dirty.addPoint(engine.getGrid().getCenterX(slot), engine.getGrid().getCenterY(slot), 21);
+                }
+                metrics.recordTouchEvent(1000 + i, 2, engine.getConnectedCount() - connected);
+                metrics.recordInvalidation();
+                dirty.clear();
+            }
+            trace.record(GestureTrace.ACTION_UP, time + 30, 20, 1120);
+            engine.onTouchMove(20, 1120);
+            engine.onTouchUp();
+            engine.isPatternEntered();
+            time += 1000;
+        }
+    };
+
+    /**
+     * The zigzag gesture with four move events queued per display frame
+     */
+    private final Runnable coalescedGesture = new Runnable() {
+        @Override
+        public void run() {
+            engine.reset();
+            engine.onTouchDown(20, 20);
+            for (int i = 1; i <= 24; i++) {
+                int x = i % 2 == 0 ? 20 : 1120;
+                int y = 20 + i * 45;
+                batch.onEvent();
+                batch.add(x, y - 20);
+                batch.add(x, y);
+                if (i % 4 == 0) {
+                    batch.drainTo(engine);
+                }
+            }
+            batch.drainTo(engine);
+            engine.onTouchUp();
+        }
+    };
+
+    /**
+     * A whole animation of every circle, one frame after the other
+     */
+    private final Runnable animationCycle = new Runnable() {
+        private long frameTime;
+
+        @Override
+        public void run() {
+            PatternGrid grid = engine.getGrid();
+            animation.reset(300, PatternAnimation.INTERPOLATOR_OVERSHOOT);
+            for (int slot = 0; slot < grid.getSlotCount(); slot++) {
+                animation.add(slot, grid.getMiddleX(), grid.getMiddleY(), grid.getLeft(slot), grid.getTop(slot), slot);
+            }
+            long duration = animation.getTotalDuration();
+            for (long playTime = 0; playTime <= duration; playTime += 16) {
+                frameTime += 16666667;
+                metrics.recordAnimationFrame(frameTime);
+                animation.apply(playTime, left, top);
+                for (int i = 0; i < animation.getCount(); i++) {
+                    int slot = animation.getSlot(i);
+                    dirty.addPoint(left[slot] + 20, top[slot] + 20, 21);
+                }
+                metrics.recordDraw(50000 + dirty.getArea(), -1);
+                dirty.clear();
+            }
+            metrics.endAnimation();
+        }
+    };
+
+    private long allocatedBytes(Runnable scenario) {
+        for (int i = 0; i < WARM_UP; i++) {
+            scenario.run();
+        }
+        long id = Thread.currentThread().getId();
+        // measuring itself may allocate once, run the same calls without a scenario to find out
+        long calibration = threads.getThreadAllocatedBytes(id);
+        calibration = threads.getThreadAllocatedBytes(id) - calibration;
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < MEASURED; i++) {
+            scenario.run();
+        }
+        return threads.getThreadAllocatedBytes(id) - before - calibration;
+    }
+
+    @Test
+    public void touchMoves_doNotAllocate() throws Exception {
+        assertEquals(0, allocatedBytes(gesture));
+        assertTrue(engine.getConnectedCount() > 24);
+    }
+
+    @Test
+    public void coalescedTouchMoves_doNotAllocate() throws Exception {
+        assertEquals(0, allocatedBytes(coalescedGesture));
+        assertTrue(engine.getConnectedCount() > 24);
+        assertEquals(4 * batch.getFrameCount(), batch.getEventCount());
+    }
+
+    @Test
+    public void animationFrames_doNotAllocate() throws Exception {
+        assertEquals(0, allocatedBytes(animationCycle));
+        assertTrue(metrics.getAnimationFrames() > 0);
+    }
+}
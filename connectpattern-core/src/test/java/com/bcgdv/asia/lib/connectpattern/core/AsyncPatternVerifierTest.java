@@ -0,0 +1,116 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AsyncPatternVerifierTest {
+
+    private ExecutorService background;
+
+    /**
+     * Stands in for the UI thread, callbacks run when the test drains it
+     */
+    private final BlockingQueue<Runnable> uiQueue = new LinkedBlockingQueue<>();
+    private final Executor ui = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            uiQueue.add(command);
+        }
+    };
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private int results;
+    private boolean lastMatched;
+
+    private final AsyncPatternVerifier.Callback callback = new AsyncPatternVerifier.Callback() {
+        @Override
+        public void onVerified(int[] pattern, boolean matched) {
+            results++;
+            lastMatched = matched;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        background = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        background.shutdownNow();
+    }
+
+    private AsyncPatternVerifier verifier(final int[] expected, final CountDownLatch gate) {
+        return new AsyncPatternVerifier(new PatternVerifier() {
+            @Override
+            public boolean verify(int[] pattern) throws Exception {
+                calls.incrementAndGet();
+                if (gate != null) {
+                    gate.await();
+                }
+                return java.util.Arrays.equals(expected, pattern);
+            }
+        }, background, ui);
+    }
+
+    private void runNextOnUi() throws Exception {
+        Runnable task = uiQueue.poll(1, TimeUnit.SECONDS);
+        assertNotNull(task);
+        task.run();
+    }
+
+    @Test
+    public void verify_reportsResultOnCallbackExecutor() throws Exception {
+        AsyncPatternVerifier verifier = verifier(new int[]{0, 4, 8}, null);
+        verifier.verify(new int[]{0, 4, 8}, callback);
+        runNextOnUi();
+        assertEquals(1, results);
+        assertTrue(lastMatched);
+        assertFalse(verifier.isVerifying());
+
+        verifier.verify(new int[]{0, 4}, callback);
+        runNextOnUi();
+        assertFalse(lastMatched);
+    }
+
+    @Test
+    public void cancel_dropsRunningResult() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        AsyncPatternVerifier verifier = verifier(new int[]{0, 4, 8}, gate);
+        verifier.verify(new int[]{0, 4, 8}, callback);
+        assertTrue(verifier.isVerifying());
+        verifier.cancel();
+        gate.countDown();
+        background.shutdown();
+        assertTrue(background.awaitTermination(1, TimeUnit.SECONDS));
+        for (Runnable task; (task = uiQueue.poll()) != null; ) {
+            task.run();
+        }
+        assertEquals(0, results);
+    }
+
+    @Test
+    public void cache_answersRepeatedPatternWithoutVerifier() throws Exception {
+        AsyncPatternVerifier verifier = verifier(new int[]{1, 2}, null);
+        verifier.setCacheSize(4);
+        verifier.verify(new int[]{1, 2}, callback);
+        runNextOnUi();
+        verifier.verify(new int[]{1, 2}, callback);
+        runNextOnUi();
+        assertEquals(2, results);
+        assertTrue(lastMatched);
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,34 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DirtyRegionTest {
+
+    @Test
+    public void union_coversEveryAddedShape() throws Exception {
+        DirtyRegion region = new DirtyRegion();
+        assertTrue(region.isEmpty());
+        assertEquals(0, region.getArea());
+
+        region.addSegment(50, 10, 10, 50, 2);
+        region.addPoint(100, 100, 5);
+        assertFalse(region.isEmpty());
+        assertEquals(8, region.getLeft());
+        assertEquals(8, region.getTop());
+        assertEquals(106, region.getRight());
+        assertEquals(106, region.getBottom());
+        assertEquals(98 * 98, region.getArea());
+
+        region.clear();
+        assertTrue(region.isEmpty());
+    }
+
+    @Test
+    public void emptyRectangleIsIgnored() throws Exception {
+        DirtyRegion region = new DirtyRegion();
+        region.add(10, 10, 10, 20);
+        assertTrue(region.isEmpty());
+    }
+}
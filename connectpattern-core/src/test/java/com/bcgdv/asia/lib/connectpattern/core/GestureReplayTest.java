@@ -0,0 +1,80 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays synthetic fast gestures where consecutive samples are far apart.
+ */
+public class GestureReplayTest {
+
+    private PatternEngine engine(int columns, int rows, int size) {
+        PatternGrid grid = new PatternGrid(columns, rows);
+        grid.layout(0, 0, size, size, 20);
+        PatternEngine engine = new PatternEngine(grid);
+        engine.setTouchSize(5);
+        return engine;
+    }
+
+    private void replay(PatternEngine engine, int... samples) {
+        assertTrue(engine.onTouchDown(samples[0], samples[1]));
+        for (int i = 2; i < samples.length; i += 2) {
+            engine.onTouchMove(samples[i], samples[i + 1]);
+        }
+        engine.onTouchUp();
+    }
+
+    @Test
+    public void diagonalJump_connectsMiddleSlot() throws Exception {
+        PatternEngine engine = engine(3, 3, 300);
+        replay(engine, 20, 20, 280, 280);
+        assertEquals(Arrays.asList(0, 4, 8), engine.getPath().toList());
+    }
+
+    @Test
+    public void reverseJump_keepsOrderOfPassing() throws Exception {
+        PatternEngine engine = engine(3, 3, 300);
+        replay(engine, 280, 20, 20, 20);
+        assertEquals(Arrays.asList(2, 1, 0), engine.getPath().toList());
+    }
+
+    @Test
+    public void jumpBetweenSlots_connectsOnlySlotsOnTheWay() throws Exception {
+        PatternEngine engine = engine(3, 3, 300);
+        // from slot 0 past the gap between slot 3 and 4 down to slot 7
+        replay(engine, 20, 20, 85, 150, 150, 280);
+        assertEquals(Arrays.asList(0, 7), engine.getPath().toList());
+    }
+
+    @Test
+    public void rowSwipeInTwoSamples_connectsWholeRowOfLargeGrid() throws Exception {
+        PatternEngine engine = engine(10, 10, 940);
+        replay(engine, 20, 120, 920, 120);
+        Integer[] expected = new Integer[10];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = 10 + i;
+        }
+        assertEquals(Arrays.asList(expected), engine.getPath().toList());
+    }
+
+    @Test
+    public void snakeAcrossLargeGrid_neverSkipsSlots() throws Exception {
+        PatternEngine engine = engine(12, 12, 1140);
+        int[] samples = new int[4 * 12];
+        for (int row = 0; row < 12; row++) {
+            int y = 20 + row * 100;
+            samples[4 * row] = row % 2 == 0 ? 20 : 1120;
+            samples[4 * row + 1] = y;
+            samples[4 * row + 2] = row % 2 == 0 ? 1120 : 20;
+            samples[4 * row + 3] = y;
+        }
+        replay(engine, samples);
+        assertEquals(144, engine.getConnectedCount());
+        assertEquals(11, engine.getConnected(11));
+        assertEquals(23, engine.getConnected(12));
+        assertEquals(132, engine.getConnected(143));
+    }
+}
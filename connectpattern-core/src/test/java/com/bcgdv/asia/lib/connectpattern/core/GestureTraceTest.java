@@ -0,0 +1,114 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GestureTraceTest {
+
+    private static void recordDiagonal(GestureTrace trace, long time) {
+        trace.record(GestureTrace.ACTION_DOWN, time, 20, 20);
+        for (int i = 1; i < 13; i++) {
+            trace.recordHistorical(time + i, 20 + 10 * i, 20 + 10 * i);
+        }
+        trace.record(GestureTrace.ACTION_MOVE, time + 13, 150.5f, 150.25f);
+        trace.record(GestureTrace.ACTION_UP, time + 30, 280, 280);
+    }
+
+    @Test
+    public void cursor_readsBackEverySample() throws Exception {
+        GestureTrace trace = new GestureTrace(1024);
+        recordDiagonal(trace, 1000000);
+
+        GestureTrace.Cursor cursor = trace.newCursor();
+        assertTrue(cursor.next());
+        assertEquals(GestureTrace.ACTION_DOWN, cursor.getAction());
+        assertEquals(1000000, cursor.getTime());
+        for (int i = 1; i < 13; i++) {
+            assertTrue(cursor.next());
+            assertTrue(cursor.isHistorical());
+            assertEquals(20 + 10 * i, cursor.getX(), 0);
+        }
+        assertTrue(cursor.next());
+        assertFalse(cursor.isHistorical());
+        assertEquals(150.5f, cursor.getX(), 0);
+        assertEquals(150.25f, cursor.getY(), 0);
+        assertTrue(cursor.next());
+        assertEquals(GestureTrace.ACTION_UP, cursor.getAction());
+        assertEquals(1000030, cursor.getTime());
+        assertFalse(cursor.next());
+
+        // delta encoding keeps samples after the first one within a few bytes
+        assertTrue(trace.getSize() <= 10 + 14 * 6);
+    }
+
+    @Test
+    public void fullBuffer_dropsOldestWholeGestures() throws Exception {
+        GestureTrace trace = new GestureTrace(200);
+        for (int i = 0; i < 20; i++) {
+            recordDiagonal(trace, 1000 * i);
+        }
+        assertTrue(trace.getSize() <= 200);
+
+        GestureTrace.Cursor cursor = trace.newCursor();
+        assertTrue(cursor.next());
+        assertEquals(GestureTrace.ACTION_DOWN, cursor.getAction());
+        long last = 0;
+        int downs = 1;
+        while (cursor.next()) {
+            downs += cursor.getAction() == GestureTrace.ACTION_DOWN ? 1 : 0;
+            last = cursor.getTime();
+        }
+        assertTrue(downs > 1);
+        assertEquals(19030, last);
+    }
+
+    @Test
+    public void gestureLargerThanBuffer_isNotRecorded() throws Exception {
+        GestureTrace trace = new GestureTrace(64);
+        trace.record(GestureTrace.ACTION_DOWN, 0, 20, 20);
+        trace.record(GestureTrace.ACTION_UP, 1, 20, 20);
+        recordDiagonal(trace, 100);
+        assertEquals(0, trace.getSize());
+
+        // the samples following the dropped gesture are ignored until the next down sample
+        trace.record(GestureTrace.ACTION_MOVE, 200, 20, 20);
+        assertEquals(0, trace.getSize());
+        trace.record(GestureTrace.ACTION_DOWN, 300, 20, 20);
+        assertTrue(trace.getSize() > 0);
+    }
+
+    @Test
+    public void export_roundTripsAndReplaysIntoEngine() throws Exception {
+        GestureTrace trace = new GestureTrace(150);
+        recordDiagonal(trace, 0);
+        recordDiagonal(trace, 1000);
+        trace.record(GestureTrace.ACTION_DOWN, 2000, 280, 20);
+        trace.record(GestureTrace.ACTION_UP, 2100, 20, 20);
+
+        PatternGrid grid = new PatternGrid();
+        grid.layout(0, 0, 300, 300, 20);
+        PatternEngine engine = new PatternEngine(grid);
+        engine.setTouchSize(5);
+        final List<List<Integer>> patterns = new ArrayList<>();
+        TraceReplayer replayer = new TraceReplayer(engine);
+        replayer.setListener(new TraceReplayer.Listener() {
+            @Override
+            public void onGestureReplayed(PatternEngine engine) {
+                patterns.add(engine.getPath().toList());
+            }
+        });
+
+        GestureTrace copy = GestureTrace.fromByteArray(trace.toByteArray());
+        assertEquals(trace.getSize(), copy.getSize());
+        // the first gesture no longer fits next to the other two
+        assertEquals(15 + 2, replayer.replay(copy));
+        assertEquals(2, patterns.size());
+        assertEquals(Arrays.asList(0, 4, 8), patterns.get(0));
+        assertEquals(Arrays.asList(2, 1, 0), patterns.get(1));
+    }
+}
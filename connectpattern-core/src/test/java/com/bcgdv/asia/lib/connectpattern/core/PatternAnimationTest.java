@@ -0,0 +1,55 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PatternAnimationTest {
+
+    @Test
+    public void apply_movesSlotsWithTheirOwnDelay() throws Exception {
+        PatternAnimation animation = new PatternAnimation(4);
+        animation.reset(100, PatternAnimation.INTERPOLATOR_LINEAR);
+        animation.add(1, 0, 0, 100, 200, 0);
+        animation.add(3, 0, 0, 100, 200, 50);
+        assertEquals(150, animation.getTotalDuration());
+
+        int[] left = new int[4];
+        int[] top = new int[4];
+        animation.apply(50, left, top);
+        assertEquals(50, left[1]);
+        assertEquals(100, top[1]);
+        assertEquals(0, left[3]);
+        assertEquals(0, left[0]);
+
+        animation.apply(150, left, top);
+        assertEquals(100, left[1]);
+        assertEquals(100, left[3]);
+        assertEquals(200, top[3]);
+    }
+
+    @Test
+    public void overshoot_passesTargetBeforeSettling() throws Exception {
+        PatternAnimation animation = new PatternAnimation(1);
+        animation.reset(300, PatternAnimation.INTERPOLATOR_OVERSHOOT);
+        animation.add(0, 0, 0, 100, 0, 0);
+        int[] left = new int[1];
+        int[] top = new int[1];
+        animation.apply(200, left, top);
+        assertTrue(left[0] > 100);
+        animation.apply(300, left, top);
+        assertEquals(100, left[0]);
+    }
+
+    @Test
+    public void zeroDuration_jumpsToEnd() throws Exception {
+        PatternAnimation animation = new PatternAnimation(1);
+        animation.reset(0, PatternAnimation.INTERPOLATOR_DECELERATE);
+        animation.add(0, 0, 500, 0, 20, 0);
+        int[] left = new int[1];
+        int[] top = new int[1];
+        animation.apply(0, left, top);
+        assertEquals(20, top[0]);
+        assertEquals(0, animation.getTotalDuration());
+    }
+}
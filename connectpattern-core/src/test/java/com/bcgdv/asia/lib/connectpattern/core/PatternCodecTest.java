@@ -0,0 +1,104 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PatternCodecTest {
+
+    @Test
+    public void longEncoding_roundTrips() throws Exception {
+        int[] pattern = {0, 4, 8, 5};
+        long code = PatternCodec.encodeLong(pattern, pattern.length);
+        int[] decoded = new int[16];
+        assertEquals(4, PatternCodec.decodeLong(code, decoded));
+        assertArrayEquals(pattern, java.util.Arrays.copyOf(decoded, 4));
+    }
+
+    @Test
+    public void longEncoding_fullSixteenSlotPatternRecoversLastSlot() throws Exception {
+        int[] pattern = {15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 0, 1};
+        long code = PatternCodec.encodeLong(pattern, pattern.length);
+        int[] decoded = new int[16];
+        assertEquals(16, PatternCodec.decodeLong(code, decoded));
+        assertArrayEquals(pattern, decoded);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void longEncoding_rejectsFullPatternRepeatingASlot() throws Exception {
+        // 0 is connected twice and 14 never, decoding would put 14 last
+        int[] pattern = {15, 0, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 0, 1};
+        PatternCodec.encodeLong(pattern, pattern.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void longEncoding_rejectsFullPatternWithWrongLastSlot() throws Exception {
+        int[] pattern = {15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 0, 0};
+        PatternCodec.encodeLong(pattern, pattern.length);
+    }
+
+    @Test
+    public void longEncoding_differsByLength() throws Exception {
+        assertNotEquals(PatternCodec.encodeLong(new int[]{0, 1}, 1), PatternCodec.encodeLong(new int[]{0, 0}, 2));
+    }
+
+    @Test
+    public void byteEncoding_roundTripsLargeGrid() throws Exception {
+        int[] pattern = {143, 0, 127, 128, 5};
+        byte[] data = PatternCodec.encodeBytes(pattern, pattern.length);
+        assertEquals(1 + 2 + 1 + 1 + 2 + 1, data.length);
+        assertTrue(data.length <= PatternCodec.maxEncodedLength(144));
+        int[] decoded = new int[144];
+        assertEquals(5, PatternCodec.decodeBytes(data, decoded));
+        assertArrayEquals(pattern, java.util.Arrays.copyOf(decoded, 5));
+    }
+
+    @Test
+    public void pathEncoding_matchesArrayEncoding() throws Exception {
+        ConnectionPath path = new ConnectionPath(9);
+        path.add(2);
+        path.add(4);
+        path.add(6);
+        assertEquals(PatternCodec.encodeLong(new int[]{2, 4, 6}, 3), PatternCodec.encodeLong(path));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pathEncoding_rejectsSlotsOutsideLong() throws Exception {
+        ConnectionPath path = new ConnectionPath(25);
+        path.add(3);
+        path.add(16);
+        PatternCodec.encodeLong(path);
+    }
+
+    @Test
+    public void hash_spreadsNeighbouringPatterns() throws Exception {
+        long a = PatternCodec.hash(PatternCodec.encodeLong(new int[]{0, 1}, 2));
+        long b = PatternCodec.hash(PatternCodec.encodeLong(new int[]{0, 2}, 2));
+        assertTrue(Long.bitCount(a ^ b) > 16);
+        byte[] data = PatternCodec.encodeBytes(new int[]{0, 1}, 2);
+        assertEquals(PatternCodec.hash(data, 0, data.length), PatternCodec.hash(data.clone(), 0, data.length));
+    }
+
+    @Test
+    public void slowHash_dependsOnSaltAndIterations() throws Exception {
+        byte[] data = PatternCodec.encodeBytes(new int[]{0, 4, 8}, 3);
+        byte[] salt = {1, 2, 3, 4};
+        byte[] hash = PatternCodec.slowHash(data, salt, 100);
+        assertEquals(32, hash.length);
+        assertArrayEquals(hash, PatternCodec.slowHash(data, salt, 100));
+        assertFalse(PatternCodec.constantTimeEquals(hash, PatternCodec.slowHash(data, new byte[]{1, 2, 3, 5}, 100)));
+        assertFalse(PatternCodec.constantTimeEquals(hash, PatternCodec.slowHash(data, salt, 101)));
+    }
+
+    @Test
+    public void constantTimeEquals_comparesContentAndLength() throws Exception {
+        assertTrue(PatternCodec.constantTimeEquals(new byte[]{1, 2}, new byte[]{1, 2}));
+        assertFalse(PatternCodec.constantTimeEquals(new byte[]{1, 2}, new byte[]{1, 3}));
+        assertFalse(PatternCodec.constantTimeEquals(new byte[]{1, 2}, new byte[]{1}));
+        assertFalse(PatternCodec.constantTimeEquals(new byte[]{1}, new byte[0]));
+        assertTrue(PatternCodec.constantTimeEquals(new byte[0], new byte[0]));
+        assertTrue(PatternCodec.constantTimeEquals(42L, 42L));
+        assertFalse(PatternCodec.constantTimeEquals(42L, 43L));
+        assertFalse(PatternCodec.constantTimeEquals(Long.MIN_VALUE, 0L));
+    }
+}
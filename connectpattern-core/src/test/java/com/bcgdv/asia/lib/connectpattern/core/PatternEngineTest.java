@@ -0,0 +1,258 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PatternEngineTest {
+
+    private PatternGrid grid;
+    private PatternEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        grid = new PatternGrid();
+        grid.layout(0, 0, 300, 300, 20);
+        engine = new PatternEngine(grid);
+        engine.setTouchSize(5);
+    }
+
+    @Test
+    public void layout_placesSlotsInCornersAndMiddle() throws Exception {
+        assertEquals(20, grid.getCenterX(0));
+        assertEquals(20, grid.getCenterY(0));
+        assertEquals(150, grid.getCenterX(4));
+        assertEquals(150, grid.getCenterY(4));
+        assertEquals(280, grid.getCenterX(8));
+        assertEquals(280, grid.getCenterY(8));
+    }
+
+    @Test
+    public void layout_spreadsColumnsAndRowsEvenly() throws Exception {
+        PatternGrid wide = new PatternGrid(4, 2);
+        wide.layout(10, 10, 370, 130, 20);
+        assertEquals(8, wide.getSlotCount());
+        assertEquals(30, wide.getCenterX(0));
+        assertEquals(136, wide.getCenterX(1));
+        assertEquals(350, wide.getCenterX(3));
+        assertEquals(110, wide.getCenterY(7));
+        assertEquals(5, wide.findSlot(136, 110, 20));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void grid_rejectsTooManyColumns() throws Exception {
+        new PatternGrid(PatternGrid.MAX_SIZE + 1, 3);
+    }
+
+    @Test
+    public void hitTest_findsSlotUnderTouch() throws Exception {
+        assertEquals(4, engine.hitTest(150, 150));
+        assertEquals(2, engine.hitTest(280, 20));
+        assertEquals(-1, engine.hitTest(80, 80));
+    }
+
+    @Test
+    public void hitTest_usesDistanceToCentre() throws Exception {
+        // inside the bounding square of slot 0 but outside its circle
+        assertEquals(-1, engine.hitTest(2, 2));
+        assertEquals(0, engine.hitTest(20, 44));
+        assertEquals(-1, engine.hitTest(20, 46));
+    }
+
+    @Test
+    public void hitTest_largeGrid() throws Exception {
+        PatternGrid large = new PatternGrid(10, 10);
+        large.layout(0, 0, 940, 940, 20);
+        for (int slot = 0; slot < large.getSlotCount(); slot++) {
+            assertEquals(slot, large.findSlot(large.getCenterX(slot) + 3, large.getCenterY(slot) - 3, 20));
+        }
+        assertEquals(-1, large.findSlot(70, 70, 20));
+    }
+
+    @Test
+    public void hitTest_ignoresInactiveSlots() throws Exception {
+        grid.setNumberOfConnectors(3);
+        assertEquals(-1, engine.hitTest(150, 20));
+        assertEquals(4, engine.hitTest(150, 150));
+    }
+
+    @Test
+    public void swipe_connectsSlotsInOrderOnce() throws Exception {
+        assertTrue(engine.onTouchDown(20, 20));
+        engine.onTouchMove(150, 150);
+        engine.onTouchMove(20, 20);
+        engine.onTouchMove(280, 280);
+        engine.onTouchUp();
+
+        assertFalse(engine.hasTouchPoint());
+        assertTrue(engine.isPatternEntered());
+        assertEquals(Arrays.asList(0, 4, 8), engine.getPath().toList());
+        int[] copy = new int[9];
+        assertEquals(3, engine.getPath().copyTo(copy));
+        assertEquals(8, copy[2]);
+
+        engine.reset();
+        assertEquals(0, engine.getConnectedCount());
+        assertFalse(engine.getPath().contains(4));
+    }
+
+    @Test
+    public void singleSlotIsAbandoned() throws Exception {
+        assertTrue(engine.onTouchDown(20, 20));
+        engine.onTouchUp();
+        assertFalse(engine.isPatternEntered());
+    }
+
+    @Test
+    public void path_tracksSlotsBeyondOneWord() throws Exception {
+        ConnectionPath path = new ConnectionPath(144);
+        assertTrue(path.add(143));
+        assertTrue(path.add(63));
+        assertTrue(path.add(64));
+        assertFalse(path.add(143));
+        assertTrue(path.contains(64));
+        assertFalse(path.contains(0));
+        assertEquals(3, path.size());
+        assertEquals(64, path.get(2));
+    }
+
+    @Test
+    public void touchDown_outsideSlotsIsIgnored() throws Exception {
+        assertFalse(engine.onTouchDown(80, 80));
+        assertEquals(0, engine.getConnectedCount());
+    }
+
+    @Test
+    public void prefixMatcher_hearsEveryNodeWithItsDepth() throws Exception {
+        final StringBuilder nodes = new StringBuilder();
+        engine.setPrefixMatcher(new PrefixMatcher() {
+            @Override
+            public void reset() {
+                nodes.append('|');
+            }
+
+            @Override
+            public boolean onNodeAdded(int node, int depth) {
+                nodes.append(node).append(':').append(depth).append(' ');
+                return true;
+            }
+        });
+        engine.onTouchDown(20, 20);
+        engine.onTouchMove(280, 280);
+        engine.reset();
+
+        assertEquals("|0:1 4:2 8:3 |", nodes.toString());
+    }
+
+    @Test
+    public void prefixMatcher_rejectionStopsConnecting() throws Exception {
+        PatternTrie trie = new PatternTrie.Builder().addAll(new int[][]{{0, 1, 2}, {0, 3, 6}}).build();
+        TriePrefixMatcher matcher = new TriePrefixMatcher(trie);
+        engine.setPrefixMatcher(matcher);
+
+        engine.onTouchDown(20, 20);
+        assertEquals(2, matcher.getCandidateCount());
+        engine.onTouchMove(280, 280);
+        engine.onTouchMove(280, 20);
+
+        assertTrue(engine.isRejected());
+        assertEquals(Arrays.asList(0, 4), engine.getPath().toList());
+        assertEquals(280, engine.getTouchX());
+        assertEquals(PatternTrie.NO_VALUE, matcher.getValue());
+
+        engine.reset();
+        assertFalse(engine.isRejected());
+        engine.onTouchDown(20, 20);
+        engine.onTouchMove(20, 280);
+        assertFalse(engine.isRejected());
+        assertEquals(1, matcher.getValue());
+    }
+
+    @Test
+    public void connectIntermediate_insertsJumpedOverSlots() throws Exception {
+        engine.setConnectIntermediate(true);
+        engine.onTouchDown(20, 20);
+        // a sample on slot 2 straight after the touch down, nothing was swept over slot 1
+        engine.onTouchUp();
+        assertEquals(2, engine.onTouchMove(280, 20));
+        assertEquals(Arrays.asList(0, 1, 2), engine.getPath().toList());
+
+        // slot 4 between 8 and 0 is already connected, only slot 0 is new
+        engine.reset();
+        engine.onTouchDown(150, 150);
+        engine.onTouchUp();
+        engine.onTouchMove(280, 280);
+        engine.onTouchUp();
+        assertEquals(1, engine.onTouchMove(20, 20));
+        assertEquals(Arrays.asList(4, 8, 0), engine.getPath().toList());
+    }
+
+    @Test
+    public void restore_showsStoredPatternWithoutTouchPoint() throws Exception {
+        final int[] added = new int[1];
+        engine.setPrefixMatcher(new PrefixMatcher() {
+            @Override
+            public void reset() {
+            }
+
+            @Override
+            public boolean onNodeAdded(int node, int depth) {
+                added[0]++;
+                return true;
+            }
+        });
+        engine.onTouchDown(20, 20);
+        engine.restore(new int[]{2, 4, 6, 7}, 3);
+        assertEquals(Arrays.asList(2, 4, 6), engine.getPath().toList());
+        assertTrue(engine.isPatternEntered());
+        assertFalse(engine.hasTouchPoint());
+        assertFalse(engine.isRejected());
+        assertEquals(1, added[0]);
+    }
+
+    @Test
+    public void restore_skipsDuplicateAndUnknownSlots() throws Exception {
+        grid.setNumberOfConnectors(5);
+        engine.restore(new int[]{0, 4, 0, -1, 9, 1, 8}, 7);
+        assertEquals(Arrays.asList(0, 4, 8), engine.getPath().toList());
+
+        engine.restore(new int[]{12, -3}, 2);
+        assertEquals(0, engine.getConnectedCount());
+        assertFalse(engine.isPatternEntered());
+    }
+
+    @Test
+    public void restore_thenTouch() throws Exception {
+        engine.restore(new int[]{0, 4}, 2);
+        // a touch without reset continues the restored pattern
+        assertEquals(1, engine.onTouchMove(280, 280));
+        assertEquals(Arrays.asList(0, 4, 8), engine.getPath().toList());
+        engine.onTouchUp();
+
+        // after a reset the next touch starts a new pattern
+        engine.reset();
+        assertTrue(engine.onTouchDown(280, 20));
+        engine.onTouchMove(280, 280);
+        assertEquals(Arrays.asList(2, 5, 8), engine.getPath().toList());
+    }
+
+    @Test
+    public void jumpTable_handlesLargeGridsAndKnightMoves() throws Exception {
+        JumpTable table = JumpTable.forGrid(5, 4);
+        assertSame(table, JumpTable.forGrid(5, 4));
+
+        // 0 to 19 is 4 columns and 3 rows away, no slot lies exactly in between
+        assertEquals(table.getStart(0, 19), table.getEnd(0, 19));
+        // 0 to 12 on a 5 column grid passes slot 6
+        assertEquals(1, table.getEnd(0, 12) - table.getStart(0, 12));
+        assertEquals(6, table.getSlot(table.getStart(0, 12)));
+        // 4 to 0 along the first row, in order from the start
+        int start = table.getStart(4, 0);
+        assertEquals(3, table.getEnd(4, 0) - start);
+        assertEquals(3, table.getSlot(start));
+        assertEquals(1, table.getSlot(start + 2));
+    }
+}
@@ -0,0 +1,97 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PatternMetricsTest {
+
+    @Test
+    public void histogram_countsValuesInFixedBuckets() throws Exception {
+        Histogram histogram = new Histogram(10, 20, 40);
+        histogram.record(5);
+        histogram.record(10);
+        histogram.record(11);
+        histogram.record(100);
+
+        assertEquals(4, histogram.getBucketCount());
+        assertEquals(2, histogram.getCount(0));
+        assertEquals(1, histogram.getCount(1));
+        assertEquals(0, histogram.getCount(2));
+        assertEquals(1, histogram.getCount(3));
+        assertEquals(Long.MAX_VALUE, histogram.getUpperBound(3));
+        assertEquals(4, histogram.getTotalCount());
+        assertEquals(100, histogram.getMax());
+        assertEquals(31, histogram.getMean());
+        assertEquals(10, histogram.getPercentile(0.5));
+        assertEquals(20, histogram.getPercentile(0.75));
+        assertEquals(100, histogram.getPercentile(0.99));
+
+        long[] counts = new long[histogram.getBucketCount()];
+        histogram.copyCounts(counts);
+        assertArrayEquals(new long[]{2, 1, 0, 1}, counts);
+        histogram.reset();
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void histogram_rejectsUnsortedBounds() throws Exception {
+        new Histogram(10, 5);
+    }
+
+    @Test
+    public void animationFrames_countDroppedFrames() throws Exception {
+        PatternMetrics metrics = new PatternMetrics();
+        metrics.setFramePeriod(16);
+        metrics.recordAnimationFrame(1000);
+        metrics.recordAnimationFrame(1016);
+        metrics.recordAnimationFrame(1034);
+        // two frames missing
+        metrics.recordAnimationFrame(1082);
+        metrics.endAnimation();
+        // the pause between animations is not a drop
+        metrics.recordAnimationFrame(5000);
+
+        assertEquals(5, metrics.getAnimationFrames());
+        assertEquals(2, metrics.getDroppedFrames());
+    }
+
+    @Test
+    public void touchAndDraw_areAggregated() throws Exception {
+        PatternMetrics metrics = new PatternMetrics();
+        metrics.recordTouchEvent(30000, 4, 2);
+        metrics.recordTouchEvent(60000, 1, 0);
+        metrics.recordInvalidation();
+        metrics.recordDraw(500000, 12000000);
+        metrics.recordDraw(400000, -1);
+
+        assertEquals(2, metrics.getTouchEvents());
+        assertEquals(5, metrics.getSamples());
+        assertEquals(2, metrics.getNodes());
+        assertEquals(1, metrics.getInvalidations());
+        assertEquals(2, metrics.getFrames());
+        assertEquals(1, metrics.getTouchToDraw().getTotalCount());
+        assertEquals(50000, metrics.getTouchTime().getPercentile(0.5));
+
+        metrics.reset();
+        assertEquals(0, metrics.getTouchEvents());
+        assertEquals(0, metrics.getDrawTime().getTotalCount());
+    }
+
+    @Test
+    public void touchBatches_addTheirNodes() throws Exception {
+        PatternMetrics metrics = new PatternMetrics();
+        metrics.recordTouchEvent(10000, 2, 0);
+        metrics.recordTouchEvent(10000, 2, 0);
+        metrics.recordTouchBatch(40000, 3);
+
+        assertEquals(2, metrics.getTouchEvents());
+        assertEquals(1, metrics.getTouchBatches());
+        assertEquals(3, metrics.getNodes());
+        assertEquals(3, metrics.getTouchTime().getTotalCount());
+
+        metrics.reset();
+        assertEquals(0, metrics.getTouchBatches());
+    }
+}
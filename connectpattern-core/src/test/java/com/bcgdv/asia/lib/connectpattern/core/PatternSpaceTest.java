@@ -0,0 +1,64 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PatternSpaceTest {
+
+    @Test
+    public void noSkipRule_matchesKnownLockScreenCounts() throws Exception {
+        PatternSpace space = new PatternSpace(new PatternGrid(), PatternSpace.RULE_NO_SKIP);
+        long[] expected = {0, 9, 56, 320, 1624, 7152, 26016, 72912, 140704, 140704};
+        for (int length = 1; length <= 9; length++) {
+            assertEquals(expected[length], space.getCount(length));
+        }
+        assertEquals(389112, space.getTotal(4));
+        assertEquals(18.57, space.getEntropyBits(4), 0.01);
+    }
+
+    @Test
+    public void anyRule_countsPermutationsOnLargeGrid() throws Exception {
+        PatternSpace space = new PatternSpace(new PatternGrid(4, 4), PatternSpace.RULE_ANY);
+        long permutations = 1;
+        for (int length = 1; length <= 16; length++) {
+            permutations *= 17 - length;
+            assertEquals(permutations, space.getCount(length));
+        }
+    }
+
+    @Test
+    public void noSkipRule_countsLargeGridWithinSeconds() throws Exception {
+        long start = System.nanoTime();
+        PatternSpace space = new PatternSpace(new PatternGrid(4, 4), PatternSpace.RULE_NO_SKIP);
+        assertTrue(System.nanoTime() - start < 10000000000L);
+        assertEquals(16, space.getCount(1));
+        assertTrue(space.getCount(16) < new PatternSpace(new PatternGrid(4, 4), PatternSpace.RULE_ANY).getCount(16));
+    }
+
+    @Test
+    public void inactiveSlotsAreNotCounted() throws Exception {
+        PatternGrid grid = new PatternGrid();
+        grid.setNumberOfConnectors(5);
+        PatternSpace space = PatternSpace.forGrid(grid, PatternSpace.RULE_NO_SKIP);
+        assertSame(space, PatternSpace.forGrid(grid, PatternSpace.RULE_NO_SKIP));
+        assertEquals(5, space.getSlotCount());
+        // inactive slots never block a line, only opposite corners pass over the middle slot
+        assertEquals(4 * 3 + 4, space.getCount(2));
+        assertTrue(space.isValid(new int[]{0, 2}, 2));
+        assertFalse(space.isValid(new int[]{0, 8}, 2));
+        assertTrue(space.isValid(new int[]{0, 4, 8}, 3));
+    }
+
+    @Test
+    public void scoreBits_reflectsChoicesAtEveryStep() throws Exception {
+        PatternSpace space = PatternSpace.forGrid(new PatternGrid(), PatternSpace.RULE_NO_SKIP);
+        // 9 first slots, then 8 neighbours of the middle slot, then 5 slots not behind 1 or 3
+        double expected = Math.log(9 * 8 * 5) / Math.log(2);
+        assertEquals(expected, space.scoreBits(new int[]{4, 0, 8}, 3), 1e-9);
+        assertEquals(-1, space.scoreBits(new int[]{0, 2}, 2), 0);
+        assertEquals(-1, space.scoreBits(new int[]{0, 1, 0}, 3), 0);
+        int[] pattern = {0, 1, 2, 5, 4};
+        assertTrue(space.scoreBits(pattern, 4) < space.scoreBits(pattern, 5));
+    }
+}
@@ -0,0 +1,93 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PatternTrieTest {
+
+    @Test
+    public void get_findsStoredPatternsOnly() throws Exception {
+        PatternTrie trie = new PatternTrie.Builder()
+                .add(new int[]{0, 4, 8}, 3, 7)
+                .add(new int[]{0, 4, 8, 5}, 4, 9)
+                .add(new int[]{2, 4}, 2, 1)
+                .build();
+
+        assertEquals(3, trie.size());
+        assertEquals(7, trie.get(new int[]{0, 4, 8}, 3));
+        assertEquals(9, trie.get(new int[]{0, 4, 8, 5}, 4));
+        assertEquals(1, trie.get(new int[]{2, 4}, 2));
+        assertEquals(PatternTrie.NO_VALUE, trie.get(new int[]{0, 4}, 2));
+        assertEquals(PatternTrie.NO_VALUE, trie.get(new int[]{0, 4, 8, 5, 2}, 5));
+        assertEquals(PatternTrie.NO_VALUE, trie.get(new int[]{1}, 1));
+    }
+
+    @Test
+    public void add_replacesValueOfEqualPattern() throws Exception {
+        PatternTrie trie = new PatternTrie.Builder()
+                .add(new int[]{1, 2}, 2, 3)
+                .add(new int[]{1, 2}, 2, 5)
+                .build();
+        assertEquals(1, trie.size());
+        assertEquals(5, trie.get(new int[]{1, 2}, 2));
+    }
+
+    @Test
+    public void get_acceptsConnectionPath() throws Exception {
+        PatternTrie trie = new PatternTrie.Builder().addAll(new int[][]{{3, 1}, {6, 7, 8}}).build();
+        ConnectionPath path = new ConnectionPath(9);
+        path.add(6);
+        path.add(7);
+        path.add(8);
+        assertEquals(1, trie.get(path));
+    }
+
+    @Test
+    public void prefixWalk_reportsChildren() throws Exception {
+        PatternTrie trie = new PatternTrie.Builder().addAll(new int[][]{{0, 1}, {0, 3}, {0, 4, 8}}).build();
+        int node = trie.getChild(trie.getRoot(), 0);
+        assertNotEquals(PatternTrie.NO_NODE, node);
+        assertEquals(3, trie.getChildCount(node));
+        assertEquals(PatternTrie.NO_VALUE, trie.getValue(node));
+        assertEquals(PatternTrie.NO_NODE, trie.getChild(node, 2));
+        assertEquals(0, trie.getChildCount(trie.getChild(node, 1)));
+    }
+
+    @Test
+    public void get_matchesMapOnRandomLargeGrid() throws Exception {
+        Random random = new Random(14);
+        Map<String, Integer> expected = new HashMap<>();
+        PatternTrie.Builder builder = new PatternTrie.Builder(16);
+        int[][] patterns = new int[5000][];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = randomPattern(random, 144);
+            builder.add(patterns[i], patterns[i].length, i);
+            expected.put(java.util.Arrays.toString(patterns[i]), i);
+        }
+        PatternTrie trie = builder.build();
+
+        assertEquals(expected.size(), trie.size());
+        for (int[] pattern : patterns) {
+            assertEquals((int) expected.get(java.util.Arrays.toString(pattern)), trie.get(pattern, pattern.length));
+        }
+        for (int i = 0; i < 1000; i++) {
+            int[] pattern = randomPattern(random, 144);
+            Integer value = expected.get(java.util.Arrays.toString(pattern));
+            assertEquals(value == null ? PatternTrie.NO_VALUE : value, trie.get(pattern, pattern.length));
+        }
+        assertTrue(trie.getMemoryBytes() < 10L * trie.getNodeCount() + 16);
+    }
+
+    private static int[] randomPattern(Random random, int slotCount) {
+        int[] pattern = new int[2 + random.nextInt(6)];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = random.nextInt(slotCount);
+        }
+        return pattern;
+    }
+}
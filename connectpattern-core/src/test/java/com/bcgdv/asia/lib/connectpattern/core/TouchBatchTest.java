@@ -0,0 +1,84 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TouchBatchTest {
+
+    private PatternEngine engine;
+    private TouchBatch batch;
+
+    @Before
+    public void setUp() throws Exception {
+        PatternGrid grid = new PatternGrid();
+        grid.layout(0, 0, 300, 300, 20);
+        engine = new PatternEngine(grid);
+        engine.setTouchSize(5);
+        batch = new TouchBatch(2);
+    }
+
+    @Test
+    public void drain_connectsSameCirclesAsImmediateProcessing() throws Exception {
+        int[][] samples = {{20, 20}, {90, 40}, {150, 150}, {200, 200}, {280, 280}, {280, 150}, {150, 20}};
+
+        engine.onTouchDown(20, 20);
+        for (int[] sample : samples) {
+            engine.onTouchMove(sample[0], sample[1]);
+        }
+        engine.onTouchUp();
+        int[] immediate = new int[engine.getConnectedCount()];
+        engine.getPath().copyTo(immediate);
+
+        engine.reset();
+        engine.onTouchDown(20, 20);
+        // four events per frame, more than the buffer was created for
+        for (int i = 0; i < samples.length; i++) {
+            batch.onEvent();
+            batch.add(samples[i][0], samples[i][1]);
+            if (i % 4 == 3) {
+                batch.drainTo(engine);
+            }
+        }
+        batch.drainTo(engine);
+        engine.onTouchUp();
+        int[] coalesced = new int[engine.getConnectedCount()];
+        engine.getPath().copyTo(coalesced);
+
+        assertEquals(Arrays.toString(immediate), Arrays.toString(coalesced));
+    }
+
+    @Test
+    public void counters_compareEventsWithFrames() throws Exception {
+        engine.onTouchDown(20, 20);
+        for (int i = 0; i < 8; i++) {
+            batch.onEvent();
+            batch.add(20 + i, 20);
+            batch.add(20 + i, 21);
+            if (i % 4 == 3) {
+                assertEquals(8, batch.drainTo(engine));
+            }
+        }
+        assertEquals(0, batch.drainTo(engine));
+        assertEquals(8, batch.getEventCount());
+        assertEquals(16, batch.getSampleCount());
+        assertEquals(2, batch.getFrameCount());
+        assertFalse(batch.isPending());
+
+        batch.resetCounters();
+        assertEquals(0, batch.getEventCount());
+        assertEquals(0, batch.getFrameCount());
+    }
+
+    @Test
+    public void clear_dropsSamples() throws Exception {
+        engine.onTouchDown(20, 20);
+        batch.add(150, 150);
+        batch.clear();
+        assertEquals(0, batch.drainTo(engine));
+        assertEquals(1, engine.getConnectedCount());
+    }
+}
@@ -0,0 +1,124 @@
+package com.bcgdv.asia.lib.connectpattern.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TouchPredictorTest {
+
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void constantVelocity_isExtrapolated() throws Exception {
+        TouchPredictor predictor = new TouchPredictor(16, 1000);
+        for (int i = 0; i < 5; i++) {
+            predictor.addSample(i * 8, 100 + i * 16, 200 - i * 8);
+        }
+        assertTrue(predictor.predict());
+        // 2 px/ms right and 1 px/ms up from (164, 168)
+        assertEquals(196, predictor.getPredictedX(), DELTA);
+        assertEquals(152, predictor.getPredictedY(), DELTA);
+    }
+
+    @Test
+    public void constantAcceleration_isExtrapolated() throws Exception {
+        TouchPredictor predictor = new TouchPredictor(10, 1000);
+        // x = t * t / 10, so the acceleration is 0.2 px/ms2
+        for (int t = 0; t <= 30; t += 10) {
+            predictor.addSample(t, t * t / 10f, 0);
+        }
+        predictor.predict();
+        // velocity of the last interval is 5 px/ms, 90 + 50 + 0.2 * 100 / 2
+        assertEquals(150, predictor.getPredictedX(), DELTA);
+        assertEquals(0, predictor.getPredictedY(), DELTA);
+    }
+
+    @Test
+    public void prediction_isClampedToMaxDistance() throws Exception {
+        TouchPredictor predictor = new TouchPredictor(50, 30);
+        predictor.addSample(0, 0, 0);
+        predictor.addSample(5, 30, 40);
+        predictor.predict();
+        assertEquals(30 + 18, predictor.getPredictedX(), DELTA);
+        assertEquals(40 + 24, predictor.getPredictedY(), DELTA);
+    }
+
+    @Test
+    public void restingFinger_isNotExtrapolated() throws Exception {
+        TouchPredictor predictor = new TouchPredictor(16, 100);
+        assertFalse(predictor.predict());
+
+        predictor.addSample(0, 10, 10);
+        assertFalse(predictor.predict());
+        assertEquals(10, predictor.getPredictedX(), DELTA);
+
+        predictor.addSample(TouchPredictor.MAX_SAMPLE_INTERVAL + 1, 50, 10);
+        assertFalse(predictor.predict());
+        assertEquals(50, predictor.getPredictedX(), DELTA);
+    }
+
+    @Test
+    public void sameTime_keepsNewerPosition() throws Exception {
+        TouchPredictor predictor = new TouchPredictor(8, 100);
+        predictor.addSample(0, 0, 0);
+        predictor.addSample(8, 8, 0);
+        predictor.addSample(8, 16, 0);
+        predictor.predict();
+        assertEquals(32, predictor.getPredictedX(), DELTA);
+    }
+
+    @Test
+    public void reset_forgetsGesture() throws Exception {
+        TouchPredictor predictor = new TouchPredictor(8, 100);
+        predictor.addSample(0, 0, 0);
+        predictor.addSample(8, 8, 0);
+        predictor.reset();
+        predictor.addSample(16, 100, 100);
+        assertFalse(predictor.predict());
+        assertEquals(100, predictor.getPredictedX(), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeHorizon_isRejected() throws Exception {
+        new TouchPredictor(-1, 10);
+    }
+
+    /**
+     * Wavy swipes sampled every 4 ms with positions rounded to whole pixels like a digitiser
+     */
+    private static GestureTrace wavySwipes() {
+        GestureTrace trace = new GestureTrace(64 * 1024);
+        for (int gesture = 0; gesture < 20; gesture++) {
+            long time = gesture * 1000L;
+            for (int i = 0; i <= 120; i++) {
+                float x = Math.round(42 + 996f * i / 120);
+                float y = Math.round(540 + (float) Math.sin(i / 20.0 + gesture) * 300);
+                int action = i == 0 ? GestureTrace.ACTION_DOWN
+                        : i == 120 ? GestureTrace.ACTION_UP : GestureTrace.ACTION_MOVE;
+                trace.record(action, time + i * 4, x, y);
+            }
+        }
+        return trace;
+    }
+
+    @Test
+    public void replay_predictionRemovesMostOfTheLag() throws Exception {
+        TouchPredictor predictor = new TouchPredictor(16, 200);
+        PredictionReplayer replayer = new PredictionReplayer(predictor);
+        assertTrue(replayer.replay(wavySwipes()) > 2000);
+
+        // the finger moves about 3 px/ms, so the unpredicted line trails by about 50 px
+        assertTrue(replayer.getMeanUnpredictedError() > 40);
+        assertTrue("predicted error " + replayer.getMeanPredictedError(),
+                replayer.getMeanPredictedError() < replayer.getMeanUnpredictedError() / 4);
+        assertTrue("remaining lag " + replayer.getRemainingLag(), replayer.getRemainingLag() < 4);
+    }
+
+    @Test
+    public void replay_noHorizonMatchesUnpredicted() throws Exception {
+        PredictionReplayer replayer = new PredictionReplayer(new TouchPredictor(0, 200));
+        replayer.replay(wavySwipes());
+        assertEquals(replayer.getMeanUnpredictedError(), replayer.getMeanPredictedError(), DELTA);
+        assertEquals(0, replayer.getMeanPredictedError(), DELTA);
+    }
+}
@@ -0,0 +1,151 @@
+package com.bcgdv.asia.lib.connectpattern;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+
+import com.bcgdv.asia.lib.connectpattern.core.PatternMetrics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Animations requested before layout start on the first pre-draw pass after it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AnimationSchedulingTest {
+
+    private static final String TAG = "AnimationScheduling";
+
+    /**
+     * Interval of the polling loop that used to wait for layout
+     */
+    private static final long OLD_POLL_INTERVAL_MS = 300;
+
+    private ConnectPatternView view;
+    private final CountDownLatch inStarted = new CountDownLatch(1);
+    private final CountDownLatch outStarted = new CountDownLatch(1);
+    private final CountDownLatch firstFrame = new CountDownLatch(1);
+    private volatile long firstFrameAt;
+
+    private void createView() {
+        view = new ConnectPatternView(InstrumentationRegistry.getTargetContext());
+        view.setOnConnectPatternListener(new ConnectPatternView.OnConnectPatternListener() {
+            @Override
+            public void onPatternEntered(ArrayList<Integer> result) {
+            }
+
+            @Override
+            public void onPatternAbandoned() {
+            }
+
+            @Override
+            public void animateInStart() {
+                inStarted.countDown();
+            }
+
+            @Override
+            public void animateInEnd() {
+            }
+
+            @Override
+            public void animateOutStart() {
+                outStarted.countDown();
+            }
+
+            @Override
+            public void animateOutEnd() {
+            }
+        });
+        // every animated frame is recorded in the metrics, the first one ends the wait
+        view.setPatternMetrics(new PatternMetrics() {
+            @Override
+            public void recordAnimationFrame(long frameTime) {
+                super.recordAnimationFrame(frameTime);
+                if (firstFrame.getCount() > 0) {
+                    firstFrameAt = frameTime;
+                    firstFrame.countDown();
+                }
+            }
+        });
+    }
+
+    private void layoutAndPreDraw() {
+        int spec = View.MeasureSpec.makeMeasureSpec(600, View.MeasureSpec.EXACTLY);
+        view.measure(spec, spec);
+        view.layout(0, 0, 600, 600);
+        view.getViewTreeObserver().dispatchOnPreDraw();
+    }
+
+    @Test
+    public void animateIn_drawsFirstFrameRightAfterLayout() throws Exception {
+        final long[] requestedAt = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                createView();
+                requestedAt[0] = System.nanoTime();
+                view.animateIn();
+                layoutAndPreDraw();
+            }
+        });
+
+        assertTrue(firstFrame.await(OLD_POLL_INTERVAL_MS * 2, TimeUnit.MILLISECONDS));
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(firstFrameAt - requestedAt[0]);
+        Log.i(TAG, "animateIn() to first animated frame: " + latencyMs + " ms");
+        assertTrue("latency " + latencyMs + " ms", latencyMs < OLD_POLL_INTERVAL_MS);
+    }
+
+    @Test
+    public void cancelAnimation_dropsPendingRequest() throws Exception {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                createView();
+                view.animateIn();
+                view.cancelAnimation();
+                layoutAndPreDraw();
+            }
+        });
+
+        assertFalse(inStarted.await(OLD_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void laterRequest_replacesPendingOne() throws Exception {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                createView();
+                view.animateIn();
+                view.animateOut();
+                layoutAndPreDraw();
+            }
+        });
+
+        assertTrue(outStarted.await(OLD_POLL_INTERVAL_MS * 2, TimeUnit.MILLISECONDS));
+        assertEquals(1, inStarted.getCount());
+    }
+
+    @Test
+    public void detach_removesPendingListener() throws Exception {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                createView();
+                view.animateIn();
+                view.onDetachedFromWindow();
+                layoutAndPreDraw();
+            }
+        });
+
+        assertFalse(inStarted.await(OLD_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,100 @@
+package com.bcgdv.asia.lib.connectpattern;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * A configuration built in code is applied without attributes, and only changes what differs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConnectPatternConfigTest {
+
+    private static final int SIZE = 600;
+
+    private final Context context = InstrumentationRegistry.getTargetContext();
+
+    private void layout(View view) {
+        int spec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+        view.measure(spec, spec);
+        view.layout(0, 0, SIZE, SIZE);
+    }
+
+    @Test
+    public void builderDefaults_matchAttributeDefaults() {
+        ConnectPatternConfig inflated = new ConnectPatternView(context).getConfig();
+        ConnectPatternConfig built = new ConnectPatternConfig.Builder(context).build();
+        assertTrue(built.hasSameGrid(inflated));
+        assertTrue(built.hasSameLook(inflated));
+        assertEquals(inflated.getAnimationType(), built.getAnimationType());
+        assertEquals(inflated.isConnectIntermediate(), built.isConnectIntermediate());
+    }
+
+    @Test
+    public void oneConfig_appliesToManyViews() {
+        ConnectPatternConfig config = new ConnectPatternConfig.Builder(context)
+                .setGridSize(4, 4)
+                .setCircleColor(Color.RED)
+                .build();
+        ConnectPatternView first = new ConnectPatternView(context, config);
+        ConnectPatternView second = new ConnectPatternView(context, config);
+        assertSame(config, first.getConfig());
+        assertSame(config, second.getConfig());
+    }
+
+    @Test
+    public void newColor_keepsPattern() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ConnectPatternView view = new ConnectPatternView(context);
+                layout(view);
+                view.showPattern(new int[]{0, 4, 8}, ConnectPatternView.STATE_SUCCESS);
+                view.setConfig(new ConnectPatternConfig.Builder(view.getConfig())
+                        .setLineColor(Color.BLUE)
+                        .build());
+                assertEquals(ConnectPatternView.STATE_SUCCESS, view.getPatternState());
+                assertEquals(Color.BLUE, view.getConfig().getLineColor());
+            }
+        });
+    }
+
+    @Test
+    public void newGrid_clearsPattern() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ConnectPatternView view = new ConnectPatternView(context);
+                layout(view);
+                view.showPattern(new int[]{0, 4, 8}, ConnectPatternView.STATE_SUCCESS);
+                view.setConfig(new ConnectPatternConfig.Builder(view.getConfig())
+                        .setGridSize(5, 5)
+                        .build());
+                assertEquals(ConnectPatternView.STATE_DEFAULT, view.getPatternState());
+                assertEquals(5, view.getConfig().getColumns());
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidGrid_isRejected() {
+        new ConnectPatternConfig.Builder(context).setGridSize(0, 3).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownLineStyle_isRejected() {
+        new ConnectPatternConfig.Builder(context).setLineStyle(2).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownAnimationType_isRejected() {
+        new ConnectPatternConfig.Builder(context).setAnimationType(-1).build();
+    }
+}
@@ -0,0 +1,83 @@
+package com.bcgdv.asia.lib.connectpattern;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.StateListDrawable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Dots are rasterised once per look and size, with one cell per state for stateful drawables.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DotAtlasTest {
+
+    private static final int DIAMETER = 40;
+
+    private static StateListDrawable selector() {
+        StateListDrawable drawable = new StateListDrawable();
+        drawable.addState(new int[]{android.R.attr.state_activated, R.attr.connectPatternStateError},
+                new ColorDrawable(Color.RED));
+        drawable.addState(new int[]{android.R.attr.state_activated, R.attr.connectPatternStateSuccess},
+                new ColorDrawable(Color.GREEN));
+        drawable.addState(new int[]{android.R.attr.state_activated}, new ColorDrawable(Color.BLUE));
+        drawable.addState(new int[0], new ColorDrawable(Color.BLACK));
+        return drawable;
+    }
+
+    @Test
+    public void plainCircle_hasOneCell() {
+        DotAtlas atlas = DotAtlas.acquire(null, Color.BLACK, DIAMETER, 1f);
+        assertFalse(atlas.hasVariants());
+        assertEquals(DIAMETER, atlas.getBitmap().getWidth());
+        atlas.release();
+    }
+
+    @Test
+    public void selector_hasOneCellPerState() {
+        DotAtlas atlas = DotAtlas.acquire(selector(), 0, DIAMETER, 1f);
+        assertTrue(atlas.hasVariants());
+        Bitmap bitmap = atlas.getBitmap();
+        assertEquals(4 * DIAMETER, bitmap.getWidth());
+        int middle = DIAMETER / 2;
+        assertEquals(Color.BLACK, bitmap.getPixel(DotAtlas.VARIANT_IDLE * DIAMETER + middle, middle));
+        assertEquals(Color.BLUE, bitmap.getPixel(DotAtlas.VARIANT_CONNECTED * DIAMETER + middle, middle));
+        assertEquals(Color.GREEN, bitmap.getPixel(DotAtlas.VARIANT_SUCCESS * DIAMETER + middle, middle));
+        assertEquals(Color.RED, bitmap.getPixel(DotAtlas.VARIANT_ERROR * DIAMETER + middle, middle));
+        atlas.release();
+    }
+
+    @Test
+    public void viewsOfDifferentSize_shareOneAtlas() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                int before = DotAtlas.getAtlasCount();
+                ConnectPatternView small = createAndDraw(400);
+                ConnectPatternView large = createAndDraw(600);
+                assertEquals(before + 1, DotAtlas.getAtlasCount());
+
+                small.onDetachedFromWindow();
+                large.onDetachedFromWindow();
+                assertEquals(before, DotAtlas.getAtlasCount());
+            }
+        });
+    }
+
+    private ConnectPatternView createAndDraw(int size) {
+        ConnectPatternView view = new ConnectPatternView(InstrumentationRegistry.getTargetContext());
+        int spec = View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.EXACTLY);
+        view.measure(spec, spec);
+        view.layout(0, 0, size, size);
+        view.draw(new Canvas(Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888)));
+        return view;
+    }
+}
@@ -0,0 +1,105 @@
+package com.bcgdv.asia.lib.connectpattern;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.bcgdv.asia.lib.connectpattern.core.PrefixMatcher;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * A cancelled gesture is abandoned like a pattern that was too short.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GestureCancelTest {
+
+    private static final int SIZE = 600;
+
+    private int abandoned;
+    private int entered;
+    private int resets;
+
+    @Test
+    public void cancel_clearsPatternAndNotifiesAbandonment() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = InstrumentationRegistry.getTargetContext();
+                // circles centred at 20, 300 and 580 on both axes
+                ConnectPatternView view = new ConnectPatternView(context, new ConnectPatternConfig.Builder(context)
+                        .setCircleRadius(20)
+                        .build());
+                int spec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+                view.measure(spec, spec);
+                view.layout(0, 0, SIZE, SIZE);
+                view.setOnConnectPatternListener(new ConnectPatternView.OnConnectPatternListener() {
+                    @Override
+                    public void onPatternEntered(ArrayList<Integer> result) {
+                        entered++;
+                    }
+
+                    @Override
+                    public void onPatternAbandoned() {
+                        abandoned++;
+                    }
+
+                    @Override
+                    public void animateInStart() {
+                    }
+
+                    @Override
+                    public void animateInEnd() {
+                    }
+
+                    @Override
+                    public void animateOutStart() {
+                    }
+
+                    @Override
+                    public void animateOutEnd() {
+                    }
+                });
+                view.setPrefixMatcher(new PrefixMatcher() {
+                    @Override
+                    public void reset() {
+                        resets++;
+                    }
+
+                    @Override
+                    public boolean onNodeAdded(int node, int depth) {
+                        return true;
+                    }
+                });
+
+                assertTrue(send(view, MotionEvent.ACTION_DOWN, 20, 20));
+                send(view, MotionEvent.ACTION_MOVE, 300, 20);
+                int resetsBefore = resets;
+                assertTrue(send(view, MotionEvent.ACTION_CANCEL, 300, 20));
+                assertEquals(1, abandoned);
+                assertEquals(0, entered);
+                // the engine was reset, so the pattern is gone
+                assertEquals(resetsBefore + 1, resets);
+
+                // a second cancel without a gesture is ignored
+                assertFalse(send(view, MotionEvent.ACTION_CANCEL, 300, 20));
+                assertEquals(1, abandoned);
+                view.onDetachedFromWindow();
+            }
+        });
+    }
+
+    private static boolean send(View view, int action, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(0, 0, action, x, y, 0);
+        boolean handled = view.onTouchEvent(event);
+        event.recycle();
+        return handled;
+    }
+}
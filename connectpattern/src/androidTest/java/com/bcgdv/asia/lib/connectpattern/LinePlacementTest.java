@@ -0,0 +1,78 @@
+package com.bcgdv.asia.lib.connectpattern;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Lines of a pattern on screen follow the circles when they are laid out again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LinePlacementTest {
+
+    private final Context context = InstrumentationRegistry.getTargetContext();
+
+    private ConnectPatternView createView() {
+        return new ConnectPatternView(context, new ConnectPatternConfig.Builder(context)
+                .setCircleRadius(20)
+                .setLineWidth(8)
+                .setLineColor(Color.RED)
+                .build());
+    }
+
+    private static void layout(View view, int size) {
+        int spec = View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.EXACTLY);
+        view.measure(spec, spec);
+        view.layout(0, 0, size, size);
+    }
+
+    /**
+     * @return color halfway along the top row of a view of the given size
+     */
+    private static int drawTopRowMiddle(View view, int size) {
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        view.draw(new Canvas(bitmap));
+        // between the first and the second circle, centred at 20 and size / 2
+        return bitmap.getPixel((20 + size / 2) / 2, 20);
+    }
+
+    @Test
+    public void relayout_movesLinesWithCircles() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ConnectPatternView view = createView();
+                layout(view, 600);
+                view.showPattern(new int[]{0, 1}, ConnectPatternView.STATE_DEFAULT);
+                assertEquals(Color.RED, drawTopRowMiddle(view, 600));
+
+                layout(view, 400);
+                assertEquals(Color.RED, drawTopRowMiddle(view, 400));
+                view.onDetachedFromWindow();
+            }
+        });
+    }
+
+    @Test
+    public void showPatternBeforeLayout_placesLinesAtLayout() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ConnectPatternView view = createView();
+                view.showPattern(new int[]{0, 1}, ConnectPatternView.STATE_DEFAULT);
+                layout(view, 600);
+                assertEquals(Color.RED, drawTopRowMiddle(view, 600));
+                view.onDetachedFromWindow();
+            }
+        });
+    }
+}
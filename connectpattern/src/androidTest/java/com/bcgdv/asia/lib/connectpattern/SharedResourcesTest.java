@@ -0,0 +1,86 @@
+package com.bcgdv.asia.lib.connectpattern;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Views with the same style and size draw from one shared entry, and can be reset for reuse.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SharedResourcesTest {
+
+    private static final int SIZE = 600;
+
+    private ConnectPatternView createAndDraw() {
+        ConnectPatternView view = new ConnectPatternView(InstrumentationRegistry.getTargetContext());
+        int spec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+        view.measure(spec, spec);
+        view.layout(0, 0, SIZE, SIZE);
+        view.draw(new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888)));
+        return view;
+    }
+
+    @Test
+    public void identicalViews_shareOneEntry() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                int before = SharedResources.getEntryCount();
+                ConnectPatternView first = createAndDraw();
+                ConnectPatternView second = createAndDraw();
+                assertEquals(before + 1, SharedResources.getEntryCount());
+
+                first.onDetachedFromWindow();
+                assertEquals(before + 1, SharedResources.getEntryCount());
+                second.onDetachedFromWindow();
+                assertEquals(before, SharedResources.getEntryCount());
+            }
+        });
+    }
+
+    @Test
+    public void differentStyle_getsItsOwnEntry() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                int before = SharedResources.getEntryCount();
+                ConnectPatternView first = createAndDraw();
+                ConnectPatternView second = createAndDraw();
+                second.setLineStyle(ConnectPatternView.LINE_STYLE_PATH);
+                second.draw(new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888)));
+                assertEquals(before + 2, SharedResources.getEntryCount());
+
+                first.onDetachedFromWindow();
+                second.onDetachedFromWindow();
+                assertEquals(before, SharedResources.getEntryCount());
+            }
+        });
+    }
+
+    @Test
+    public void showPatternThenReset_returnsToIdle() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ConnectPatternView view = createAndDraw();
+                view.showPattern(new int[]{0, 4, 8}, ConnectPatternView.STATE_SUCCESS);
+                assertEquals(ConnectPatternView.STATE_SUCCESS, view.getPatternState());
+
+                view.setEnabled(false);
+                view.reset();
+                assertEquals(ConnectPatternView.STATE_DEFAULT, view.getPatternState());
+                assertTrue(view.isEnabled());
+                assertEquals(View.VISIBLE, view.getVisibility());
+                view.onDetachedFromWindow();
+            }
+        });
+    }
+}
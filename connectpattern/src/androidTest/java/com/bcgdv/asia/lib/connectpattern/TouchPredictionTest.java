@@ -0,0 +1,75 @@
+package com.bcgdv.asia.lib.connectpattern;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.bcgdv.asia.lib.connectpattern.core.PrefixMatcher;
+import com.bcgdv.asia.lib.connectpattern.core.TouchPredictor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * The predicted end of the line runs ahead of the finger but never connects circles.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TouchPredictionTest {
+
+    private static final int SIZE = 600;
+
+    private int connectedCircles;
+
+    @Test
+    public void prediction_neverConnectsCircles() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = InstrumentationRegistry.getTargetContext();
+                // circles centred at 20, 300 and 580 on both axes
+                ConnectPatternView view = new ConnectPatternView(context, new ConnectPatternConfig.Builder(context)
+                        .setCircleRadius(20)
+                        .setLineWidth(4)
+                        .build());
+                int spec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+                view.measure(spec, spec);
+                view.layout(0, 0, SIZE, SIZE);
+                view.setPrefixMatcher(new PrefixMatcher() {
+                    @Override
+                    public void reset() {
+                        connectedCircles = 0;
+                    }
+
+                    @Override
+                    public boolean onNodeAdded(int node, int depth) {
+                        connectedCircles++;
+                        return true;
+                    }
+                });
+                TouchPredictor predictor = new TouchPredictor(32, 200);
+                view.setTouchPredictor(predictor);
+
+                // a fast swipe from the first circle that stops 100 px short of the second
+                send(view, MotionEvent.ACTION_DOWN, 0, 20);
+                for (int i = 1; i <= 6; i++) {
+                    send(view, MotionEvent.ACTION_MOVE, i * 8, 20 + i * 30);
+                }
+                assertTrue(predictor.getPredictedX() > 280);
+                assertEquals(1, connectedCircles);
+
+                send(view, MotionEvent.ACTION_UP, 56, 200);
+                assertEquals(1, connectedCircles);
+            }
+        });
+    }
+
+    private static void send(View view, int action, long time, float x) {
+        MotionEvent event = MotionEvent.obtain(0, time, action, x, 20, 0);
+        view.onTouchEvent(event);
+        event.recycle();
+    }
+}
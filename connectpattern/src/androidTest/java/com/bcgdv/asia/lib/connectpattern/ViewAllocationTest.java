@@ -0,0 +1,137 @@
+package com.bcgdv.asia.lib.connectpattern;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.bcgdv.asia.lib.connectpattern.core.PatternMetrics;
+import com.bcgdv.asia.lib.connectpattern.core.PatternPath;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives whole gestures through a laid out view, drawing a frame after every event, and fails
+ * if the touch or draw paths allocate once warmed up.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ViewAllocationTest {
+
+    private static final int SIZE = 600;
+    private static final int WARM_UP = 50;
+    private static final int MEASURED = 20;
+
+    private ConnectPatternView view;
+    private MotionEvent event;
+    private Canvas canvas;
+    private int entered;
+
+    private void createView() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        // circles centred at 20, 300 and 580 on both axes
+        view = new ConnectPatternView(context, new ConnectPatternConfig.Builder(context)
+                .setCircleRadius(20)
+                .setLineWidth(4)
+                .build());
+        int spec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+        view.measure(spec, spec);
+        view.layout(0, 0, SIZE, SIZE);
+        view.setOnPatternPathListener(new ConnectPatternView.OnPatternPathListener() {
+            @Override
+            public void onPatternEntered(PatternPath path) {
+                entered++;
+                // a detached view queues the delayed clear in a list that allocates, so the
+                // pattern is consumed straight away like a pin pad would
+                view.clearPattern();
+            }
+        });
+        // obtained once and moved around, obtaining events allocates
+        event = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 20, 20, 0);
+        canvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+    }
+
+    private void send(int action, float x, float y) {
+        event.setAction(action);
+        event.setLocation(x, y);
+        view.onTouchEvent(event);
+        view.draw(canvas);
+    }
+
+    /**
+     * Connect the top row, go down the right column and come back along the bottom row
+     */
+    private void gesture() {
+        send(MotionEvent.ACTION_DOWN, 20, 20);
+        for (int x = 20; x <= 580; x += 20) {
+            send(MotionEvent.ACTION_MOVE, x, 20);
+        }
+        for (int y = 20; y <= 580; y += 20) {
+            send(MotionEvent.ACTION_MOVE, 580, y);
+        }
+        for (int x = 580; x >= 20; x -= 20) {
+            send(MotionEvent.ACTION_MOVE, x, 580);
+        }
+        send(MotionEvent.ACTION_UP, 20, 580);
+    }
+
+    @SuppressWarnings("deprecation")
+    private int allocations() {
+        for (int i = 0; i < WARM_UP; i++) {
+            gesture();
+        }
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < MEASURED; i++) {
+                gesture();
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        return Debug.getThreadAllocCount();
+    }
+
+    private void assertNoAllocations() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(0, allocations());
+                assertEquals(WARM_UP + MEASURED, entered);
+                event.recycle();
+                view.onDetachedFromWindow();
+            }
+        });
+    }
+
+    @Test
+    public void gestureAndDraw_doNotAllocate() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                createView();
+            }
+        });
+        assertNoAllocations();
+    }
+
+    @Test
+    public void coalescedGestureWithMetrics_doesNotAllocate() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                createView();
+                // moves stay queued until the up event, no frame runs on the blocked main thread
+                view.setTouchCoalescing(true);
+                view.setPatternMetrics(new PatternMetrics());
+            }
+        });
+        assertNoAllocations();
+    }
+}
@@ -0,0 +1,344 @@
+package com.bcgdv.asia.lib.connectpattern;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+
+import com.bcgdv.asia.lib.connectpattern.core.PatternGrid;
+
+/**
+ * Immutable look and grid of a {@link ConnectPatternView}, built once and applied to any number
+ * of views with {@link ConnectPatternView#setConfig(ConnectPatternConfig)} or the
+ * {@link ConnectPatternView#ConnectPatternView(Context, ConnectPatternConfig)} constructor,
+ * which skips parsing attributes.
+ * <p>
+ * Sizes are in pixels. Build it with a {@link Builder}, or derive a changed copy with
+ * {@link Builder#Builder(ConnectPatternConfig)}.
+ */
+public final class ConnectPatternConfig {
+
+    private final int columns;
+    private final int rows;
+    private final int numberOfConnectors;
+    private final boolean connectIntermediate;
+    private final int circleColor;
+    private final int lineColor;
+    private final int successColor;
+    private final int errorColor;
+    private final int circleRadius;
+    private final int lineWidth;
+    private final int lineStyle;
+    private final Drawable drawable;
+    private final int animationType;
+
+    private ConnectPatternConfig(Builder builder) {
+        columns = builder.columns;
+        rows = builder.rows;
+        numberOfConnectors = builder.numberOfConnectors;
+        connectIntermediate = builder.connectIntermediate;
+        circleColor = builder.circleColor;
+        lineColor = builder.lineColor;
+        successColor = builder.successColor;
+        errorColor = builder.errorColor;
+        circleRadius = builder.circleRadius;
+        lineWidth = builder.lineWidth;
+        lineStyle = builder.lineStyle;
+        drawable = builder.drawable;
+        animationType = builder.animationType;
+    }
+
+    /**
+     * Read the configuration from the attributes of a layout
+     *
+     * @param context Context
+     * @param attrs   attributes of the view, may be null
+     * @return the configuration, with defaults for missing attributes
+     */
+    static ConnectPatternConfig obtain(Context context, AttributeSet attrs) {
+        Builder builder = new Builder(context);
+        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.ConnectPatternView);
+        try {
+            builder.numberOfConnectors = typedArray.getInt(R.styleable.ConnectPatternView_connectPatternNumber, builder.numberOfConnectors);
+            builder.columns = typedArray.getInt(R.styleable.ConnectPatternView_connectPatternColumns, builder.columns);
+            builder.rows = typedArray.getInt(R.styleable.ConnectPatternView_connectPatternRows, builder.rows);
+            builder.connectIntermediate = typedArray.getBoolean(R.styleable.ConnectPatternView_connectPatternConnectIntermediate, builder.connectIntermediate);
+            builder.circleColor = typedArray.getColor(R.styleable.ConnectPatternView_connectPatternCircleColor, builder.circleColor);
+            builder.circleRadius = (int) typedArray.getDimension(R.styleable.ConnectPatternView_connectPatternCircleRadius, builder.circleRadius);
+            builder.lineColor = typedArray.getColor(R.styleable.ConnectPatternView_connectPatternLineColor, builder.lineColor);
+            builder.successColor = typedArray.getColor(R.styleable.ConnectPatternView_connectPatternSuccessColor, builder.successColor);
+            builder.errorColor = typedArray.getColor(R.styleable.ConnectPatternView_connectPatternErrorColor, builder.errorColor);
+            builder.lineWidth = (int) typedArray.getDimension(R.styleable.ConnectPatternView_connectPatternLineWidth, builder.lineWidth);
+            builder.drawable = typedArray.getDrawable(R.styleable.ConnectPatternView_connectPatternDrawable);
+            builder.animationType = typedArray.getInt(R.styleable.ConnectPatternView_connectPatternAnimationType, builder.animationType);
+            builder.lineStyle = typedArray.getInt(R.styleable.ConnectPatternView_connectPatternLineStyle, builder.lineStyle);
+        } finally {
+            typedArray.recycle();
+        }
+        return builder.build();
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return number of active circles on the 3x3 grid: 2, 3, 5 or 9
+     */
+    public int getNumberOfConnectors() {
+        return numberOfConnectors;
+    }
+
+    public boolean isConnectIntermediate() {
+        return connectIntermediate;
+    }
+
+    public int getCircleColor() {
+        return circleColor;
+    }
+
+    public int getLineColor() {
+        return lineColor;
+    }
+
+    public int getSuccessColor() {
+        return successColor;
+    }
+
+    public int getErrorColor() {
+        return errorColor;
+    }
+
+    /**
+     * @return radius of the circles in pixels
+     */
+    public int getCircleRadius() {
+        return circleRadius;
+    }
+
+    /**
+     * @return width of the connecting lines in pixels
+     */
+    public int getLineWidth() {
+        return lineWidth;
+    }
+
+    /**
+     * @return {@link ConnectPatternView#LINE_STYLE_SEGMENTS} or {@link ConnectPatternView#LINE_STYLE_PATH}
+     */
+    public int getLineStyle() {
+        return lineStyle;
+    }
+
+    /**
+     * @return drawable used instead of the circles, or null
+     */
+    public Drawable getDrawable() {
+        return drawable;
+    }
+
+    /**
+     * @return {@link ConnectPatternView#ANIMATION_TYPE_NONE}, {@link ConnectPatternView#ANIMATION_TYPE_MIDDLE}
+     * or {@link ConnectPatternView#ANIMATION_TYPE_BOTTOM}
+     */
+    public int getAnimationType() {
+        return animationType;
+    }
+
+    /**
+     * @param other configuration to compare with
+     * @return true if both configurations lay out the same circles
+     */
+    boolean hasSameGrid(ConnectPatternConfig other) {
+        return columns == other.columns
+                && rows == other.rows
+                && numberOfConnectors == other.numberOfConnectors;
+    }
+
+    /**
+     * @param other configuration to compare with
+     * @return true if both configurations draw the same paints and dots
+     */
+    boolean hasSameLook(ConnectPatternConfig other) {
+        return circleColor == other.circleColor
+                && lineColor == other.lineColor
+                && successColor == other.successColor
+                && errorColor == other.errorColor
+                && circleRadius == other.circleRadius
+                && lineWidth == other.lineWidth
+                && lineStyle == other.lineStyle
+                && drawable == other.drawable;
+    }
+
+    /**
+     * Collects the values of a {@link ConnectPatternConfig}
+     */
+    public static class Builder {
+
+        private int columns = 3;
+        private int rows = 3;
+        private int numberOfConnectors = PatternGrid.SLOT_COUNT;
+        private boolean connectIntermediate;
+        private int circleColor = Color.BLACK;
+        private int lineColor = Color.LTGRAY;
+        private int successColor = 0xFF4CAF50;
+        private int errorColor = 0xFFF44336;
+        private int circleRadius;
+        private int lineWidth;
+        private int lineStyle = ConnectPatternView.LINE_STYLE_SEGMENTS;
+        private Drawable drawable;
+        private int animationType = ConnectPatternView.ANIMATION_TYPE_MIDDLE;
+
+        /**
+         * Start from the defaults, a 14dp circle radius and 7dp lines on a 3x3 grid
+         *
+         * @param context Context, for the display density
+         */
+        public Builder(Context context) {
+            float density = context.getResources().getDisplayMetrics().density;
+            circleRadius = (int) (14 * density);
+            lineWidth = (int) (7 * density);
+        }
+
+        /**
+         * Start from the values of an existing configuration
+         *
+         * @param config configuration to copy
+         */
+        public Builder(ConnectPatternConfig config) {
+            columns = config.columns;
+            rows = config.rows;
+            numberOfConnectors = config.numberOfConnectors;
+            connectIntermediate = config.connectIntermediate;
+            circleColor = config.circleColor;
+            lineColor = config.lineColor;
+            successColor = config.successColor;
+            errorColor = config.errorColor;
+            circleRadius = config.circleRadius;
+            lineWidth = config.lineWidth;
+            lineStyle = config.lineStyle;
+            drawable = config.drawable;
+            animationType = config.animationType;
+        }
+
+        /**
+         * @param columns number of columns, 1 to {@link PatternGrid#MAX_SIZE}
+         * @param rows    number of rows, 1 to {@link PatternGrid#MAX_SIZE}
+         * @return this builder
+         */
+        public Builder setGridSize(int columns, int rows) {
+            this.columns = columns;
+            this.rows = rows;
+            return this;
+        }
+
+        /**
+         * @param numberOfConnectors number of active circles on the 3x3 grid: 2, 3, 5 or 9
+         * @return this builder
+         */
+        public Builder setNumberOfConnectors(int numberOfConnectors) {
+            this.numberOfConnectors = numberOfConnectors;
+            return this;
+        }
+
+        /**
+         * @param connectIntermediate true to connect the circles jumped over on a straight line
+         * @return this builder
+         */
+        public Builder setConnectIntermediate(boolean connectIntermediate) {
+            this.connectIntermediate = connectIntermediate;
+            return this;
+        }
+
+        public Builder setCircleColor(int color) {
+            circleColor = color;
+            return this;
+        }
+
+        public Builder setLineColor(int color) {
+            lineColor = color;
+            return this;
+        }
+
+        public Builder setSuccessColor(int color) {
+            successColor = color;
+            return this;
+        }
+
+        public Builder setErrorColor(int color) {
+            errorColor = color;
+            return this;
+        }
+
+        /**
+         * @param radius radius of the circles in pixels
+         * @return this builder
+         */
+        public Builder setCircleRadius(int radius) {
+            circleRadius = radius;
+            return this;
+        }
+
+        /**
+         * @param width width of the connecting lines in pixels
+         * @return this builder
+         */
+        public Builder setLineWidth(int width) {
+            lineWidth = width;
+            return this;
+        }
+
+        /**
+         * @param style {@link ConnectPatternView#LINE_STYLE_SEGMENTS} or {@link ConnectPatternView#LINE_STYLE_PATH}
+         * @return this builder
+         */
+        public Builder setLineStyle(int style) {
+            lineStyle = style;
+            return this;
+        }
+
+        /**
+         * @param drawable drawable used instead of the circles, null for circles
+         * @return this builder
+         */
+        public Builder setDrawable(Drawable drawable) {
+            this.drawable = drawable;
+            return this;
+        }
+
+        /**
+         * @param type {@link ConnectPatternView#ANIMATION_TYPE_NONE}, {@link ConnectPatternView#ANIMATION_TYPE_MIDDLE}
+         *             or {@link ConnectPatternView#ANIMATION_TYPE_BOTTOM}
+         * @return this builder
+         */
+        public Builder setAnimationType(int type) {
+            animationType = type;
+            return this;
+        }
+
+        /**
+         * @return the configuration
+         */
+        public ConnectPatternConfig build() {
+            if (columns < 1 || rows < 1 || columns > PatternGrid.MAX_SIZE || rows > PatternGrid.MAX_SIZE) {
+                throw new IllegalArgumentException("Grid size must be between 1x1 and "
+                        + PatternGrid.MAX_SIZE + "x" + PatternGrid.MAX_SIZE);
+            }
+            if (circleRadius < 0 || lineWidth < 0) {
+                throw new IllegalArgumentException("Radius and line width must not be negative");
+            }
+            if (lineStyle != ConnectPatternView.LINE_STYLE_SEGMENTS && lineStyle != ConnectPatternView.LINE_STYLE_PATH) {
+                throw new IllegalArgumentException("Unknown line style " + lineStyle);
+            }
+            if (animationType < ConnectPatternView.ANIMATION_TYPE_NONE || animationType > ConnectPatternView.ANIMATION_TYPE_BOTTOM) {
+                throw new IllegalArgumentException("Unknown animation type " + animationType);
+            }
+            return new ConnectPatternConfig(this);
+        }
+    }
+}
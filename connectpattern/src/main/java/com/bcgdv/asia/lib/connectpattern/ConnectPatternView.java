@@ -1,61 +1,169 @@
 package com.bcgdv.asia.lib.connectpattern;
 
 import android.animation.Animator;
-import android.animation.AnimatorSet;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.ValueAnimator;
 import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.Display;
 import android.view.MotionEvent;
 import android.view.View;
-import android.view.animation.AccelerateInterpolator;
-import android.view.animation.DecelerateInterpolator;
-import android.view.animation.OvershootInterpolator;
+import android.view.ViewTreeObserver;
+import android.view.animation.LinearInterpolator;
+
+import com.bcgdv.asia.lib.connectpattern.core.AsyncPatternVerifier;
+import com.bcgdv.asia.lib.connectpattern.core.ConnectionPath;
+import com.bcgdv.asia.lib.connectpattern.core.DirtyRegion;
+import com.bcgdv.asia.lib.connectpattern.core.GestureTrace;
+import com.bcgdv.asia.lib.connectpattern.core.PatternAnimation;
+import com.bcgdv.asia.lib.connectpattern.core.PatternEngine;
+import com.bcgdv.asia.lib.connectpattern.core.PatternGrid;
+import com.bcgdv.asia.lib.connectpattern.core.PatternMetrics;
+import com.bcgdv.asia.lib.connectpattern.core.PatternPath;
+import com.bcgdv.asia.lib.connectpattern.core.PatternVerifier;
+import com.bcgdv.asia.lib.connectpattern.core.PrefixMatcher;
+import com.bcgdv.asia.lib.connectpattern.core.TouchBatch;
+import com.bcgdv.asia.lib.connectpattern.core.TouchPredictor;
 
 import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Created by magdamyka on 2/05/2016.
  */
 public class ConnectPatternView extends View {
 
+    /**
+     * Entered pattern is shown in the line color
+     */
+    public static final int STATE_DEFAULT = 0;
+
+    /**
+     * Entered pattern is shown in the success color
+     */
+    public static final int STATE_SUCCESS = 1;
+
+    /**
+     * Entered pattern is shown in the error color
+     */
+    public static final int STATE_ERROR = 2;
+
+    /**
+     * Connecting lines are drawn as separate segments
+     */
+    public static final int LINE_STYLE_SEGMENTS = 0;
+
+    /**
+     * Connecting lines are drawn as one stroked path with rounded joins
+     */
+    public static final int LINE_STYLE_PATH = 1;
+
+    /**
+     * Circles appear and disappear without moving
+     */
+    public static final int ANIMATION_TYPE_NONE = 0;
+
+    /**
+     * Circles spread out from and gather in the middle
+     */
+    public static final int ANIMATION_TYPE_MIDDLE = 1;
+
+    /**
+     * Circles rise from and fall to the bottom
+     */
+    public static final int ANIMATION_TYPE_BOTTOM = 2;
+
+    /**
+     * Background thread shared by all views that verify patterns without their own executor
+     */
+    private static ExecutorService sVerifierExecutor;
+
     private final long ANIMATION_DURATION = 300;
-    private final int ANIMATION_TYPE_NONE = 0;
-    private final int ANIMATION_TYPE_MIDDLE = 1;
-    private final int ANIMATION_TYPE_BOTTOM = 2;
-    private int numbersOfConnectors = 9;
-    private int circleColor = Color.BLACK;
-    private int lineColor = Color.LTGRAY;
-    private int lineWidth = 7; //in dp
-    private int radius = 14; //in dp
-    private int diameter = 28; //in dp
-    private int dp48 = 48; //in dp
-    private int animationType = ANIMATION_TYPE_MIDDLE;
+    private final int ANIMATION_PENDING_NONE = -1;
+    private final int ANIMATION_IN = 0;
+    private final int ANIMATION_OUT = 1;
+    /**
+     * Look and grid, the fields below are copied from it for the drawing code
+     */
+    private ConnectPatternConfig config;
+    private int circleColor;
+    private int lineColor;
+    private int successColor;
+    private int errorColor;
+    private int lineWidth;
+    private int radius;
+    private int dp4;
+    private int animationType;
     private Drawable drawable;
+    private int lineStyle;
+    private int patternState = STATE_DEFAULT;
+    private long feedbackDuration = ANIMATION_DURATION;
+    private Runnable clearPatternRunnable = new Runnable() {
+        @Override
+        public void run() {
+            clearPattern();
+        }
+    };
+
+    /**
+     * Grid layout and touch handling, shared with the plain Java core
+     */
+    private PatternGrid grid;
+    private PatternEngine engine;
+
+    /**
+     * Left and top edges of all possible circles to draw, moved around by the animations
+     */
+    private int[] circleLeft;
+    private int[] circleTop;
 
-    private int leftX;
-    private int topY;
-    private int rightX;
-    private int bottomY;
-    private int centerX;
-    private int centerY;
+    /**
+     * Circle movements of the current animation, all driven by one animator
+     */
+    private PatternAnimation animation;
+    private ValueAnimator animator;
+    private AnimatorListener animatorListener = new AnimatorListener();
+    private int animationDirection;
+    private long animationDuration;
 
-    private Paint pCircle = new Paint(Paint.ANTI_ALIAS_FLAG);
-    private Paint pLine = new Paint(Paint.ANTI_ALIAS_FLAG);
-    private Rect touchPoint = new Rect();
+    /**
+     * Animation requested before the first layout, started from the next pre-draw pass
+     */
+    private int pendingDirection = ANIMATION_PENDING_NONE;
+    private long pendingDelay;
+    private boolean pendingListenerAdded;
+    private ViewTreeObserver.OnPreDrawListener pendingAnimationListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            if (!grid.isLaidOut()) {
+                return true;
+            }
+            removePendingAnimationListener();
+            startPendingAnimation();
+            return true;
+        }
+    };
 
     /**
-     * Array of all possible circles to draw
+     * Start and end coordinates of every connecting line, appended as circles get connected
      */
-    private Rect[] circles = new Rect[9];
+    private float[] lineCoordinates;
+    private int lineSegments;
+    private Path linePath = new Path();
 
     /**
      * Array of indexes of circles based on the number of circles that were chosen
@@ -63,11 +171,87 @@ public class ConnectPatternView extends View {
     private int[] indexes;
 
     /**
-     * Array of indexes of circles in order they were connected
+     * Area that changed since the last frame, only this part of the view is invalidated
      */
-    private ArrayList<Integer> connectionOrder = new ArrayList<>();
+    private DirtyRegion dirty = new DirtyRegion();
 
     private OnConnectPatternListener mPatternListener;
+    private OnPatternPathListener mPathListener;
+    private OnFrameDrawnListener mFrameListener;
+    private OnPatternVerifiedListener mVerifiedListener;
+
+    /**
+     * Verifies entered patterns off the UI thread, null when the host verifies them itself
+     */
+    private AsyncPatternVerifier verifier;
+    private int verifierCacheSize;
+    private AsyncPatternVerifier.Callback verifierCallback = new AsyncPatternVerifier.Callback() {
+        @Override
+        public void onVerified(int[] pattern, boolean matched) {
+            setPatternState(matched ? STATE_SUCCESS : STATE_ERROR);
+            if (matched) {
+                // keep the accepted pattern on screen and ignore touches until it is cleared
+                removeCallbacks(clearPatternRunnable);
+                inputLocked = true;
+            }
+            if (mVerifiedListener != null) {
+                mVerifiedListener.onPatternVerified(pattern, matched);
+            }
+        }
+    };
+    private boolean inputLocked;
+
+    /**
+     * Receives the raw touch samples seen by onTouchEvent, null when not recording
+     */
+    private GestureTrace gestureTrace;
+
+    /**
+     * Move samples waiting for the next display frame, null unless coalescing
+     */
+    private TouchBatch touchBatch;
+    private boolean touchFramePosted;
+    private Choreographer.FrameCallback touchFrameCallback;
+
+    /**
+     * Extrapolates the end of the line following the finger, null to draw it to the last sample
+     */
+    private TouchPredictor touchPredictor;
+    private int lineEndX;
+    private int lineEndY;
+
+    /**
+     * Kept to hand it to the engine of a new grid
+     */
+    private PrefixMatcher prefixMatcher;
+
+    /**
+     * Measurements of the touch and draw paths, null unless the host asked for them
+     */
+    private PatternMetrics metrics;
+
+    /**
+     * Time of the oldest touch event not drawn yet, on the clock of System.nanoTime(), or -1
+     */
+    private long pendingEventTime = -1;
+
+    /**
+     * Paints, dot sprite and resting circle layer, shared with all views of the same style and size
+     */
+    private SharedResources sharedResources;
+    private boolean sharedResourcesStale = true;
+    private boolean circleLayerEnabled = true;
+
+    /**
+     * Reused by every dot blit
+     */
+    private final Rect spriteSource = new Rect();
+    private final Rect spriteTarget = new Rect();
+
+    /**
+     * True while every circle is at its laid out position
+     */
+    private boolean circlesAtRest;
 
     /**
      * Constructor for ConnectPatternView
@@ -108,6 +292,18 @@ public class ConnectPatternView extends View {
         init(context, attrs);
     }
 
+    /**
+     * Constructor for ConnectPatternView created in code, without parsing attributes
+     *
+     * @param context Context
+     * @param config  look and grid of the view
+     */
+    public ConnectPatternView(Context context, ConnectPatternConfig config) {
+        super(context);
+        dp4 = (int) (4 * context.getResources().getDisplayMetrics().density);
+        setConfig(config);
+    }
+
     /**
      * Initialize the ConnectPatternView widget
      *
@@ -115,46 +311,81 @@ public class ConnectPatternView extends View {
      * @param attrs   AttributeSet
      */
     private void init(Context context, AttributeSet attrs) {
-        float multi = context.getResources().getDisplayMetrics().density;
-        lineWidth *= multi;
-        radius *= multi;
-        diameter *= multi;
-        dp48 *= multi;
+        dp4 = (int) (4 * context.getResources().getDisplayMetrics().density);
+        setConfig(ConnectPatternConfig.obtain(context, attrs));
+    }
 
-        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.ConnectPatternView);
-        try {
-            numbersOfConnectors = typedArray.getInt(R.styleable.ConnectPatternView_connectPatternNumber, numbersOfConnectors);
-            circleColor = typedArray.getColor(R.styleable.ConnectPatternView_connectPatternCircleColor, circleColor);
-            radius = (int) typedArray.getDimension(R.styleable.ConnectPatternView_connectPatternCircleRadius, radius);
-            diameter = radius * 2;
-            lineColor = typedArray.getColor(R.styleable.ConnectPatternView_connectPatternLineColor, lineColor);
-            lineWidth = (int) typedArray.getDimension(R.styleable.ConnectPatternView_connectPatternLineWidth, lineWidth);
-            drawable = typedArray.getDrawable(R.styleable.ConnectPatternView_connectPatternDrawable);
-            animationType = typedArray.getInt(R.styleable.ConnectPatternView_connectPatternAnimationType, animationType);
-        } finally {
-            typedArray.recycle();
+    /**
+     * Change the look and grid of the view. Only what differs from the current configuration
+     * is recomputed: a new grid clears the pattern and lays the circles out again, a new radius
+     * lays them out again, and new colors, sizes or drawable switch to other shared paints and dots.
+     *
+     * @param config look and grid of the view
+     */
+    public void setConfig(ConnectPatternConfig config) {
+        ConnectPatternConfig old = this.config;
+        if (old == config) {
+            return;
+        }
+        boolean newGrid = old == null || !config.hasSameGrid(old);
+        boolean newLayout = newGrid || old.getCircleRadius() != config.getCircleRadius();
+        if (newGrid && old != null) {
+            cancelAnimation();
+            clearPattern();
         }
+        this.config = config;
+        circleColor = config.getCircleColor();
+        lineColor = config.getLineColor();
+        successColor = config.getSuccessColor();
+        errorColor = config.getErrorColor();
+        radius = config.getCircleRadius();
+        lineWidth = config.getLineWidth();
+        lineStyle = config.getLineStyle();
+        drawable = config.getDrawable();
+        animationType = config.getAnimationType();
 
-        switch (numbersOfConnectors) {
-            case 2:
-                indexes = new int[]{0, 2};
-                break;
-            case 3:
-                indexes = new int[]{0, 2, 4};
-                break;
-            case 5:
-                indexes = new int[]{0, 2, 4, 6, 8};
-                break;
-            case 9:
-                indexes = new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8};
-                break;
-            default:
-                break;
+        if (newGrid) {
+            PatternGrid newGridModel = new PatternGrid(config.getColumns(), config.getRows());
+            newGridModel.setNumberOfConnectors(config.getNumberOfConnectors());
+            PatternEngine newEngine = new PatternEngine(newGridModel);
+            if (engine != null) {
+                newEngine.setPrefixMatcher(prefixMatcher);
+            }
+            grid = newGridModel;
+            engine = newEngine;
+            indexes = grid.getIndexes();
+            circleLeft = new int[grid.getSlotCount()];
+            circleTop = new int[grid.getSlotCount()];
+            lineCoordinates = new float[4 * grid.getSlotCount()];
+            animation = new PatternAnimation(grid.getSlotCount());
+        }
+        engine.setConnectIntermediate(config.isConnectIntermediate());
+        //ensure touch point width is at least 4dp
+        engine.setTouchSize(Math.max(lineWidth, dp4));
+
+        if (newLayout && getWidth() > 0) {
+            layoutGrid(getWidth(), getHeight());
         }
+        if (old == null || newLayout || !config.hasSameLook(old)) {
+            sharedResourcesStale = true;
+        }
+        invalidateAll();
+    }
 
-        pCircle.setColor(circleColor);
-        pLine.setColor(lineColor);
-        pLine.setStrokeWidth(lineWidth);
+    /**
+     * @return current look and grid of the view
+     */
+    public ConnectPatternConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Choose how the connecting lines are drawn
+     *
+     * @param style {@link #LINE_STYLE_SEGMENTS} or {@link #LINE_STYLE_PATH}
+     */
+    public void setLineStyle(int style) {
+        setConfig(new ConnectPatternConfig.Builder(config).setLineStyle(style).build());
     }
 
     /**
@@ -163,30 +394,74 @@ public class ConnectPatternView extends View {
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
-        leftX = getPaddingLeft();
-        topY = getPaddingTop();
-        rightX = w - getPaddingRight();
-        bottomY = h - getPaddingBottom();
+        layoutGrid(w, h);
+    }
 
-        centerX = leftX + (rightX - leftX) / 2;
-        centerY = topY + (bottomY - topY) / 2;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPadding(int left, int top, int right, int bottom) {
+        super.setPadding(left, top, right, bottom);
+        if (grid != null && getWidth() > 0) {
+            layoutGrid(getWidth(), getHeight());
+            invalidateAll();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    @Override
+    public void setPaddingRelative(int start, int top, int end, int bottom) {
+        super.setPaddingRelative(start, top, end, bottom);
+        if (grid != null && getWidth() > 0) {
+            layoutGrid(getWidth(), getHeight());
+            invalidateAll();
+        }
+    }
 
+    private void layoutGrid(int w, int h) {
+        grid.layout(getPaddingLeft(), getPaddingTop(), w - getPaddingRight(), h - getPaddingBottom(), radius);
         setupCircles();
+        // lines of a pattern on screen were placed at the previous circle centres
+        rebuildLines();
+        sharedResourcesStale = true;
+    }
+
+    /**
+     * Switch to the shared resources of the current style and size, releasing the previous ones
+     */
+    private void updateSharedResources() {
+        SharedResources.Key key = new SharedResources.Key(circleColor, lineColor, successColor, errorColor,
+                radius, lineWidth, lineStyle, drawable, getResources().getDisplayMetrics().density,
+                grid.getColumns(), grid.getRows(), indexes, getWidth(), getHeight(),
+                getPaddingLeft(), getPaddingTop(), getPaddingRight(), getPaddingBottom());
+        if (sharedResources == null || !sharedResources.key.equals(key)) {
+            SharedResources acquired = SharedResources.acquire(key, drawable);
+            releaseSharedResources();
+            sharedResources = acquired;
+        }
+        sharedResourcesStale = false;
+    }
+
+    private void releaseSharedResources() {
+        if (sharedResources != null) {
+            sharedResources.release();
+            sharedResources = null;
+        }
     }
 
     /**
      * Setup circles on a screen
      */
     private void setupCircles() {
-        circles[0] = new Rect(leftX, topY, leftX + diameter, topY + diameter);
-        circles[1] = new Rect(centerX - radius, topY, centerX + radius, topY + diameter);
-        circles[2] = new Rect(rightX - diameter, topY, rightX, topY + diameter);
-        circles[3] = new Rect(leftX, centerY - radius, leftX + diameter, centerY + radius);
-        circles[4] = new Rect(centerX - radius, centerY - radius, centerX + radius, centerY + radius);
-        circles[5] = new Rect(rightX - diameter, centerY - radius, rightX, centerY + radius);
-        circles[6] = new Rect(leftX, bottomY - diameter, leftX + diameter, bottomY);
-        circles[7] = new Rect(centerX - radius, bottomY - diameter, centerX + radius, bottomY);
-        circles[8] = new Rect(rightX - diameter, bottomY - diameter, rightX, bottomY);
+        for (int i = 0; i < circleLeft.length; i++) {
+            circleLeft[i] = grid.getLeft(i);
+            circleTop[i] = grid.getTop(i);
+        }
+        circlesAtRest = true;
     }
 
     /**
@@ -195,57 +470,167 @@ public class ConnectPatternView extends View {
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        drawLines(canvas);
-        drawLineToTouchPoint(canvas);
-        drawCircles(canvas);
+        long start = mFrameListener != null || metrics != null ? System.nanoTime() : 0;
+        if (sharedResources == null || sharedResourcesStale) {
+            // released when detached from the window
+            updateSharedResources();
+        }
+        Paint linePaint = sharedResources.getLinePaint(patternState);
+        drawLines(canvas, linePaint);
+        drawLineToTouchPoint(canvas, linePaint);
+        boolean cached = false;
+        DotAtlas atlas = sharedResources.getAtlas();
+        // the layer holds idle dots only, connected ones may need another variant
+        if (circlesAtRest && circleLayerEnabled
+                && (atlas == null || !atlas.hasVariants() || engine.getConnectedCount() == 0)) {
+            Canvas layerCanvas = sharedResources.beginCircleLayer();
+            if (layerCanvas != null) {
+                drawCircles(layerCanvas, true);
+            }
+            Bitmap circleLayer = sharedResources.getCircleLayer();
+            if (circleLayer != null) {
+                canvas.drawBitmap(circleLayer, 0, 0, null);
+                cached = true;
+            }
+        }
+        if (!cached) {
+            drawCircles(canvas, false);
+        }
+        if (mFrameListener != null) {
+            mFrameListener.onFrameDrawn(dirty.getArea(), getWidth() * getHeight(), System.nanoTime() - start, cached);
+        }
+        if (metrics != null) {
+            metrics.recordDraw(System.nanoTime() - start, pendingEventTime >= 0 ? start - pendingEventTime : -1);
+            pendingEventTime = -1;
+        }
+        dirty.clear();
     }
 
     /**
-     * Setup circles on a screen
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateFramePeriod();
+        if (pendingDirection != ANIMATION_PENDING_NONE) {
+            addPendingAnimationListener();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
      */
-    private void drawLineToTouchPoint(Canvas canvas) {
-        if (touchPoint.height() > 0 && touchPoint.width() > 0) {
-            drawLine(canvas, circles[connectionOrder.get(connectionOrder.size() - 1)], touchPoint);
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // the request stays pending and is picked up again when attached to a window
+        removePendingAnimationListener();
+        if (verifier != null) {
+            verifier.cancel();
+        }
+        if (touchBatch != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            removeTouchFrame();
+            touchBatch.clear();
         }
+        releaseSharedResources();
     }
 
     /**
-     * Draw lines between the connectors
+     * Enable or disable caching the resting circles in a bitmap, enabled by default.
+     * Disabling it draws every circle on every frame.
      *
-     * @param canvas
+     * @param enabled true to cache the circles
+     */
+    public void setCircleLayerEnabled(boolean enabled) {
+        circleLayerEnabled = enabled;
+        invalidateAll();
+    }
+
+    /**
+     * Setup circles on a screen
      */
-    private void drawLines(Canvas canvas) {
-        for (int i = 0; i < connectionOrder.size() - 1; i++) {
-            drawLine(canvas, circles[connectionOrder.get(i)], circles[connectionOrder.get(i + 1)]);
+    private void drawLineToTouchPoint(Canvas canvas, Paint linePaint) {
+        int connected = engine.getConnectedCount();
+        if (engine.hasTouchPoint() && connected > 0) {
+            int start = engine.getConnected(connected - 1);
+            canvas.drawLine(circleLeft[start] + radius, circleTop[start] + radius,
+                    lineEndX, lineEndY, linePaint);
         }
     }
 
     /**
-     * Draw the line between the touch point and previous point
+     * Draw lines between the connectors in a single call
      *
      * @param canvas
+     * @param linePaint paint of the current pattern state
      */
-    private void drawCircles(Canvas canvas) {
-        for (int i = 0; i < indexes.length; i++) {
-            int circleNumber = indexes[i];
-            if (drawable == null) {
-                canvas.drawCircle(circles[circleNumber].centerX(), circles[circleNumber].centerY(), radius, pCircle);
-            } else {
-                drawable.setBounds(circles[circleNumber]);
-                drawable.draw(canvas);
+    private void drawLines(Canvas canvas, Paint linePaint) {
+        if (lineSegments == 0) {
+            return;
+        }
+        if (lineStyle == LINE_STYLE_PATH) {
+            canvas.drawPath(linePath, linePaint);
+        } else {
+            canvas.drawLines(lineCoordinates, 0, lineSegments * 4, linePaint);
+        }
+    }
+
+    /**
+     * Append the lines to circles connected since the last update
+     */
+    private void updateLines() {
+        int connected = engine.getConnectedCount();
+        for (int i = lineSegments + 1; i < connected; i++) {
+            int start = engine.getConnected(i - 1);
+            int end = engine.getConnected(i);
+            int offset = lineSegments * 4;
+            lineCoordinates[offset] = grid.getCenterX(start);
+            lineCoordinates[offset + 1] = grid.getCenterY(start);
+            lineCoordinates[offset + 2] = grid.getCenterX(end);
+            lineCoordinates[offset + 3] = grid.getCenterY(end);
+            if (lineSegments == 0) {
+                linePath.moveTo(lineCoordinates[offset], lineCoordinates[offset + 1]);
             }
+            linePath.lineTo(lineCoordinates[offset + 2], lineCoordinates[offset + 3]);
+            lineSegments++;
         }
     }
 
     /**
-     * Draw line between two Rect objects
+     * Place the lines of every connected circle again, after the circle centres moved
+     */
+    private void rebuildLines() {
+        clearLines();
+        updateLines();
+    }
+
+    /**
+     * Remove all connecting lines
+     */
+    private void clearLines() {
+        lineSegments = 0;
+        linePath.rewind();
+    }
+
+    /**
+     * Draw the line between the touch point and previous point
      *
      * @param canvas
-     * @param start
-     * @param end
      */
-    private void drawLine(Canvas canvas, Rect start, Rect end) {
-        canvas.drawLine(start.centerX(), start.centerY(), end.centerX(), end.centerY(), pLine);
+    private void drawCircles(Canvas canvas, boolean idle) {
+        DotAtlas atlas = sharedResources.getAtlas();
+        if (atlas == null) {
+            return;
+        }
+        int connectedVariant = patternState == STATE_SUCCESS ? DotAtlas.VARIANT_SUCCESS
+                : patternState == STATE_ERROR ? DotAtlas.VARIANT_ERROR : DotAtlas.VARIANT_CONNECTED;
+        ConnectionPath path = engine.getPath();
+        for (int i = 0; i < indexes.length; i++) {
+            int circleNumber = indexes[i];
+            int variant = !idle && path.contains(circleNumber) ? connectedVariant : DotAtlas.VARIANT_IDLE;
+            atlas.draw(canvas, variant, circleLeft[circleNumber], circleTop[circleNumber], spriteSource, spriteTarget);
+        }
     }
 
     /**
@@ -253,61 +638,84 @@ public class ConnectPatternView extends View {
      */
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if (!isEnabled()) {
+        if (gestureTrace != null) {
+            recordEvent(event);
+        }
+        if (metrics == null) {
+            return handleTouchEvent(event);
+        }
+        if (event.getActionMasked() != MotionEvent.ACTION_MOVE) {
+            // queued moves are measured on their own, not as part of this event
+            processTouchBatch();
+        }
+        long start = System.nanoTime();
+        int connected = event.getActionMasked() == MotionEvent.ACTION_DOWN ? 0 : engine.getConnectedCount();
+        boolean handled = handleTouchEvent(event);
+        metrics.recordTouchEvent(System.nanoTime() - start, event.getHistorySize() + 1,
+                Math.max(engine.getConnectedCount() - connected, 0));
+        if (handled && pendingEventTime < 0) {
+            // uptimeMillis and nanoTime both run on the monotonic clock
+            pendingEventTime = event.getEventTime() * 1000000L;
+        }
+        return handled;
+    }
+
+    /**
+     * Drive the pattern engine with a touch event
+     *
+     * @param event
+     * @return true if the event was consumed
+     */
+    private boolean handleTouchEvent(MotionEvent event) {
+        if (!isEnabled() || inputLocked) {
             return false;
         }
 
         int action = event.getAction();
+        if (touchPredictor != null) {
+            addPredictorSamples(event);
+        }
+        if (action != MotionEvent.ACTION_MOVE) {
+            // samples of earlier moves come first
+            processTouchBatch();
+        }
         switch (action) {
             case MotionEvent.ACTION_DOWN:
-                setTouchPoint(event);
-                for (int i = 0; i < indexes.length; i++) {
-                    int circleNumber = indexes[i];
-                    if (touchPoint.intersect(circles[circleNumber])) {
-                        connectionOrder.add(circleNumber);
-                        return true;
-                    }
+                clearPattern();
+                boolean started = engine.onTouchDown((int) event.getX(), (int) event.getY());
+                updateLineEnd();
+                if (started) {
+                    showRejection();
+                    return true;
                 }
                 break;
             case MotionEvent.ACTION_MOVE:
-                setTouchPoint(event);
-                for (int i = 0; i < indexes.length; i++) {
-                    int circleNumber = indexes[i];
-                    if (touchPoint.intersect(circles[circleNumber])) {
-                        if (!connectionOrder.contains(circleNumber)) {
-                            connectionOrder.add(circleNumber);
-                        }
-                    }
+                if (queueSamples(event)) {
+                    return true;
                 }
-                invalidate();
+                handleSamples(event);
+                showRejection();
+                invalidateDirty();
                 return true;
 
             case MotionEvent.ACTION_UP:
-                setEnabled(false);
-                touchPoint.left = 0;
-                touchPoint.right = 0;
-                touchPoint.top = 0;
-                touchPoint.bottom = 0;
-
-                postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        setEnabled(true);
-                        if (mPatternListener != null) {
-                            if (connectionOrder.size() > 1) {
-                                mPatternListener.onPatternEntered(connectionOrder);
-                            } else {
-                                mPatternListener.onPatternAbandoned();
-                            }
-                        }
-                        connectionOrder.clear();
-                        invalidate();
-                    }
-                }, ANIMATION_DURATION);
-
+                handleSamples(event);
+                showRejection();
+                markLineToTouchPoint();
+                engine.onTouchUp();
+                invalidateDirty();
+                deliverPattern();
                 return true;
             case MotionEvent.ACTION_CANCEL:
-                break;
+                // a parent took over the gesture, for example a scrolling list
+                if (!engine.hasTouchPoint()) {
+                    break;
+                }
+                clearPattern();
+                if (mPatternListener != null) {
+                    mPatternListener.onPatternAbandoned();
+                }
+                return true;
             default:
                 break;
         }
@@ -315,156 +723,408 @@ public class ConnectPatternView extends View {
     }
 
     /**
-     * Set the position of the touch point
+     * Append the samples of a touch event to the gesture trace
      *
      * @param event
      */
-    private void setTouchPoint(MotionEvent event) {
-        int touchPointWidth = lineWidth;
-        int dp4 = dp48/12;
-        //ensure touch point width is at least 4dp
-        if (touchPointWidth < dp4) {
-            touchPointWidth = dp4;
+    private void recordEvent(MotionEvent event) {
+        int action;
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                action = GestureTrace.ACTION_DOWN;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                action = GestureTrace.ACTION_MOVE;
+                break;
+            case MotionEvent.ACTION_UP:
+                action = GestureTrace.ACTION_UP;
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                action = GestureTrace.ACTION_CANCEL;
+                break;
+            default:
+                return;
+        }
+        int historySize = event.getHistorySize();
+        for (int h = 0; h < historySize; h++) {
+            gestureTrace.recordHistorical(event.getHistoricalEventTime(h), event.getHistoricalX(h), event.getHistoricalY(h));
         }
+        gestureTrace.record(action, event.getEventTime(), event.getX(), event.getY());
+    }
 
-        touchPoint.top = (int) event.getY() - touchPointWidth;
-        touchPoint.left = (int) event.getX() - touchPointWidth;
-        touchPoint.bottom = (int) event.getY() + touchPointWidth;
-        touchPoint.right = (int) event.getX() + touchPointWidth;
+    /**
+     * Process the samples of a move or up event and mark everything they changed
+     *
+     * @param event
+     */
+    private void handleSamples(MotionEvent event) {
+        int connected = engine.getConnectedCount();
+        markLineToTouchPoint();
+        processSamples(event);
+        markSamples(connected);
     }
 
     /**
-     * Animate the widget in
+     * Add the lines of newly connected circles and mark them and the line to the touch point
+     *
+     * @param connected number of connected circles before the samples were processed
      */
-    public void animateIn() {
-        animateIn(0);
+    private void markSamples(int connected) {
+        updateLineEnd();
+        updateLines();
+        for (int i = connected; i < engine.getConnectedCount(); i++) {
+            markCircle(engine.getConnected(i));
+            if (i > 0) {
+                markCircle(engine.getConnected(i - 1));
+            }
+        }
+        markLineToTouchPoint();
     }
 
-    public void animateIn(final long delay) {
-        if (!isEnabled()) {
-            return;
+    /**
+     * Hand the real samples of a touch event to the predictor
+     *
+     * @param event
+     */
+    private void addPredictorSamples(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            touchPredictor.reset();
         }
-        if (getVisibility() == GONE) {
-            setVisibility(INVISIBLE);
+        int historySize = event.getHistorySize();
+        for (int h = 0; h < historySize; h++) {
+            touchPredictor.addSample(event.getHistoricalEventTime(h), event.getHistoricalX(h), event.getHistoricalY(h));
         }
-        if (circles[0] == null) {
-            postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    animateIn(delay);
-                }
-            }, ANIMATION_DURATION);
-            return;
+        touchPredictor.addSample(event.getEventTime(), event.getX(), event.getY());
+    }
+
+    /**
+     * Keep the samples of a move event for the next display frame when coalescing
+     *
+     * @param event
+     * @return true if the samples were queued
+     */
+    private boolean queueSamples(MotionEvent event) {
+        if (touchBatch == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return false;
         }
+        touchBatch.onEvent();
+        int historySize = event.getHistorySize();
+        for (int h = 0; h < historySize; h++) {
+            touchBatch.add((int) event.getHistoricalX(h), (int) event.getHistoricalY(h));
+        }
+        touchBatch.add((int) event.getX(), (int) event.getY());
+        postTouchFrame();
+        return true;
+    }
 
-        List<Animator> animators = (animationType == ANIMATION_TYPE_MIDDLE)?
-                                            animateInFromMiddle() : animateInFromBottom();
-        AnimatorSet set = new AnimatorSet();
-        set.playTogether(animators);
-        set.setDuration(animationType == ANIMATION_TYPE_NONE? 0 : ANIMATION_DURATION);
-        set.addListener(new Animator.AnimatorListener() {
-            @Override
-            public void onAnimationStart(Animator animation) {
-                setEnabled(false);
-                setVisibility(VISIBLE);
-                if (mPatternListener != null) {
-                    mPatternListener.animateInStart();
-                }
-            }
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postTouchFrame() {
+        if (!touchFramePosted) {
+            touchFramePosted = true;
+            Choreographer.getInstance().postFrameCallback(touchFrameCallback);
+        }
+    }
 
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                setEnabled(true);
-                if (mPatternListener != null) {
-                    mPatternListener.animateInEnd();
-                }
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void removeTouchFrame() {
+        if (touchFramePosted) {
+            touchFramePosted = false;
+            Choreographer.getInstance().removeFrameCallback(touchFrameCallback);
+        }
+    }
+
+    /**
+     * Process the move samples queued since the last frame and mark everything they changed
+     */
+    private void processTouchBatch() {
+        if (touchBatch == null || !touchBatch.isPending()) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            removeTouchFrame();
+        }
+        long start = metrics != null ? System.nanoTime() : 0;
+        int connected = engine.getConnectedCount();
+        markLineToTouchPoint();
+        touchBatch.drainTo(engine);
+        markSamples(connected);
+        showRejection();
+        invalidateDirty();
+        if (metrics != null) {
+            metrics.recordTouchBatch(System.nanoTime() - start, engine.getConnectedCount() - connected);
+        }
+    }
+
+    /**
+     * Show a pattern rejected by the prefix matcher in the error state while it is still drawn
+     */
+    private void showRejection() {
+        if (engine.isRejected() && patternState != STATE_ERROR) {
+            setPatternStateColor(STATE_ERROR);
+            for (int i = 0; i < engine.getConnectedCount(); i++) {
+                markCircle(engine.getConnected(i));
             }
+            markLineToTouchPoint();
+        }
+    }
 
-            @Override
-            public void onAnimationCancel(Animator animation) {
+    /**
+     * Hand the finished pattern to the listeners straight away. An entered pattern stays on
+     * screen as feedback until {@link #clearPattern()}, a new touch or the feedback duration ends.
+     */
+    private void deliverPattern() {
+        boolean entered = engine.isPatternEntered();
+        if (entered && mPathListener != null) {
+            mPathListener.onPatternEntered(engine.getPath());
+        }
+        if (mPatternListener != null) {
+            if (entered) {
+                mPatternListener.onPatternEntered(engine.getPath().toList());
+            } else {
+                mPatternListener.onPatternAbandoned();
             }
+        }
+        if (!entered || engine.getConnectedCount() == 0) {
+            clearPattern();
+        } else if (engine.isRejected()) {
+            // no accepted pattern starts like this one, there is nothing left to verify
+            if (verifier != null && mVerifiedListener != null) {
+                int[] pattern = new int[engine.getConnectedCount()];
+                engine.getPath().copyTo(pattern);
+                mVerifiedListener.onPatternVerified(pattern, false);
+            }
+            scheduleClearPattern();
+        } else if (verifier != null) {
+            int[] pattern = new int[engine.getConnectedCount()];
+            engine.getPath().copyTo(pattern);
+            verifier.verify(pattern, verifierCallback);
+        } else {
+            scheduleClearPattern();
+        }
+    }
 
-            @Override
-            public void onAnimationRepeat(Animator animation) {
+    private void scheduleClearPattern() {
+        removeCallbacks(clearPatternRunnable);
+        postDelayed(clearPatternRunnable, feedbackDuration);
+    }
+
+    /**
+     * Remove the entered pattern from the screen and cancel its pending feedback
+     */
+    public void clearPattern() {
+        removeCallbacks(clearPatternRunnable);
+        if (verifier != null) {
+            verifier.cancel();
+        }
+        inputLocked = false;
+        if (touchBatch != null) {
+            touchBatch.clear();
+        }
+        for (int i = 0; i < engine.getConnectedCount(); i++) {
+            markCircle(engine.getConnected(i));
+        }
+        markLineToTouchPoint();
+        engine.reset();
+        clearLines();
+        setPatternStateColor(STATE_DEFAULT);
+        invalidateDirty();
+    }
+
+    /**
+     * Return the view to its idle state so it can be reused for other content, for example
+     * in a list: animations are ended, the pattern and its feedback are cleared and the circles
+     * are shown at their resting positions without an intro animation. Listeners, the verifier
+     * and the style are kept.
+     */
+    public void reset() {
+        cancelAnimation();
+        clearPattern();
+        setEnabled(true);
+        setupCircles();
+        setVisibility(VISIBLE);
+        invalidateAll();
+    }
+
+    /**
+     * Show a stored pattern, for example when binding a recycled view. The pattern stays on
+     * screen until {@link #clearPattern()} or a new touch, listeners are not called. It can be
+     * called before the view is laid out.
+     *
+     * @param pattern circle indexes in the order they were connected
+     * @param state   {@link #STATE_DEFAULT}, {@link #STATE_SUCCESS} or {@link #STATE_ERROR}
+     */
+    public void showPattern(int[] pattern, int state) {
+        clearPattern();
+        engine.restore(pattern, pattern.length);
+        if (grid.isLaidOut()) {
+            updateLines();
+        }
+        // otherwise the lines are placed by the first layout, bound views often come before it
+        setPatternStateColor(state);
+        invalidateAll();
+    }
+
+    /**
+     * Show the entered pattern as correct or wrong. The pattern stays on screen for the
+     * feedback duration from now on.
+     *
+     * @param state {@link #STATE_DEFAULT}, {@link #STATE_SUCCESS} or {@link #STATE_ERROR}
+     */
+    public void setPatternState(int state) {
+        setPatternStateColor(state);
+        for (int i = 0; i < engine.getConnectedCount(); i++) {
+            markCircle(engine.getConnected(i));
+        }
+        invalidateDirty();
+        if (engine.getConnectedCount() > 0 && !engine.hasTouchPoint()) {
+            scheduleClearPattern();
+        }
+    }
+
+    public int getPatternState() {
+        return patternState;
+    }
+
+    private void setPatternStateColor(int state) {
+        // the shared line paint of the state is picked when drawing
+        patternState = state;
+    }
+
+    /**
+     * Set how long an entered pattern stays on screen after release or after
+     * {@link #setPatternState(int)}
+     *
+     * @param duration time in milliseconds
+     */
+    public void setFeedbackDuration(long duration) {
+        feedbackDuration = duration;
+    }
+
+    /**
+     * Mark the line between the last connected circle and the touch point as changed
+     */
+    private void markLineToTouchPoint() {
+        int connected = engine.getConnectedCount();
+        if (engine.hasTouchPoint() && connected > 0) {
+            int start = engine.getConnected(connected - 1);
+            dirty.addSegment(circleLeft[start] + radius, circleTop[start] + radius,
+                    lineEndX, lineEndY, lineWidth / 2 + 1);
+        }
+    }
+
+    /**
+     * Move the end of the line following the finger to the touch point, or to where the
+     * predictor expects the finger to be. Only the real touch point connects circles.
+     */
+    private void updateLineEnd() {
+        lineEndX = engine.getTouchX();
+        lineEndY = engine.getTouchY();
+        if (touchPredictor != null && touchPredictor.predict()) {
+            lineEndX = (int) touchPredictor.getPredictedX();
+            lineEndY = (int) touchPredictor.getPredictedY();
+        }
+    }
+
+    /**
+     * Mark a circle and the ends of the lines connected to it as changed
+     *
+     * @param circle index of the circle
+     */
+    private void markCircle(int circle) {
+        dirty.addPoint(circleLeft[circle] + radius, circleTop[circle] + radius,
+                Math.max(radius, lineWidth / 2) + 1);
+    }
+
+    /**
+     * Invalidate the area that changed since the last frame
+     */
+    @SuppressWarnings("deprecation")
+    private void invalidateDirty() {
+        if (!dirty.isEmpty()) {
+            invalidate(dirty.getLeft(), dirty.getTop(), dirty.getRight(), dirty.getBottom());
+            if (metrics != null) {
+                metrics.recordInvalidation();
             }
-        });
-        set.setStartDelay(delay);
-        set.start();
+        }
     }
 
-    private List<Animator> animateInFromMiddle() {
-        List<Animator> animators = new ArrayList<>();
+    /**
+     * Invalidate the whole view
+     */
+    private void invalidateAll() {
+        dirty.add(0, 0, getWidth(), getHeight());
+        invalidate();
+        if (metrics != null) {
+            metrics.recordInvalidation();
+        }
+    }
 
+    /**
+     * Feed the batched historical samples and the current position of the event to the engine,
+     * so fast swipes still connect every circle they pass over
+     *
+     * @param event
+     */
+    private void processSamples(MotionEvent event) {
+        int historySize = event.getHistorySize();
+        for (int h = 0; h < historySize; h++) {
+            engine.onTouchMove((int) event.getHistoricalX(h), (int) event.getHistoricalY(h));
+        }
+        engine.onTouchMove((int) event.getX(), (int) event.getY());
+    }
+
+    /**
+     * Animate the widget in
+     */
+    public void animateIn() {
+        animateIn(0);
+    }
+
+    public void animateIn(final long delay) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (getVisibility() == GONE) {
+            setVisibility(INVISIBLE);
+        }
+        if (!grid.isLaidOut()) {
+            requestAnimation(ANIMATION_IN, delay);
+            return;
+        }
+        cancelPendingAnimation();
+
+        if (animationType == ANIMATION_TYPE_MIDDLE) {
+            animateInFromMiddle();
+        } else {
+            animateInFromBottom();
+        }
+        startAnimation(ANIMATION_IN, delay);
+    }
+
+    private void animateInFromMiddle() {
+        int middleLeft = grid.getMiddleX() - radius;
+        int middleTop = grid.getMiddleY() - radius;
+        animation.reset(ANIMATION_DURATION, PatternAnimation.INTERPOLATOR_OVERSHOOT);
         for (int i = 0; i < indexes.length; i++) {
             int circleNumber = indexes[i];
-            ValueAnimator leftAnim = ValueAnimator.ofInt(circles[4].left, circles[circleNumber].left);
-            leftAnim.setInterpolator(new OvershootInterpolator());
-            leftAnim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                Rect circle = null;
-                @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    int left = (Integer) animation.getAnimatedValue();
-                    circle.left = left;
-                    circle.right = left + diameter;
-                }
-                public ValueAnimator.AnimatorUpdateListener init(Rect rect) {
-                    circle = rect;
-                    return this;
-                }
-            }.init(circles[circleNumber]));
-            animators.add(leftAnim);
-
-            ValueAnimator topAnim = ValueAnimator.ofInt(circles[4].top, circles[circleNumber].top);
-            topAnim.setInterpolator(new OvershootInterpolator());
-            topAnim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                Rect circle = null;
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    int top = (Integer) animation.getAnimatedValue();
-                    circle.top = top;
-                    circle.bottom = top + diameter;
-                    invalidate();
-                }
-                public ValueAnimator.AnimatorUpdateListener init(Rect rect) {
-                    circle = rect;
-                    return this;
-                }
-            }.init(circles[circleNumber]));
-            animators.add(topAnim);
+            animation.add(circleNumber, middleLeft, middleTop,
+                    grid.getLeft(circleNumber), grid.getTop(circleNumber), 0);
         }
-        return animators;
     }
 
-    private List<Animator> animateInFromBottom() {
-        List<Animator> animators = new ArrayList<>();
+    private void animateInFromBottom() {
         int height = getHeight();
         if (height <= 0) {
             height = getResources().getDisplayMetrics().heightPixels;
         }
+        boolean none = animationType == ANIMATION_TYPE_NONE;
+        animation.reset(none ? 0 : ANIMATION_DURATION, PatternAnimation.INTERPOLATOR_DECELERATE);
         for (int i = 0; i < indexes.length; i++) {
             int circleNumber = indexes[i];
-            int originalTop = circles[circleNumber].top;
-            circles[circleNumber].top = height;
-            circles[circleNumber].bottom = height + diameter;
-            ValueAnimator topAnim = ValueAnimator.ofInt(height, originalTop);
-            topAnim.setInterpolator(new DecelerateInterpolator());
-            topAnim.setStartDelay((ANIMATION_DURATION / indexes.length) * (i%3));
-            topAnim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                Rect circle = null;
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    int top = (Integer) animation.getAnimatedValue();
-                    circle.top = top;
-                    circle.bottom = top + diameter;
-                    invalidate();
-                }
-                public ValueAnimator.AnimatorUpdateListener init(Rect rect) {
-                    circle = rect;
-                    return this;
-                }
-            }.init(circles[circleNumber]));
-            animators.add(topAnim);
+            long startDelay = none ? 0 : (ANIMATION_DURATION / indexes.length) * (i % grid.getColumns());
+            animation.add(circleNumber, grid.getLeft(circleNumber), height,
+                    grid.getLeft(circleNumber), grid.getTop(circleNumber), startDelay);
         }
-        invalidate();
-        return animators;
     }
 
     /**
@@ -478,133 +1138,192 @@ public class ConnectPatternView extends View {
         if (!isEnabled()) {
             return;
         }
-        if (circles[0] == null) {
-            postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    animateOut(delay);
-                }
-            }, ANIMATION_DURATION);
+        if (!grid.isLaidOut()) {
+            requestAnimation(ANIMATION_OUT, delay);
             return;
         }
+        cancelPendingAnimation();
 
-        List<Animator> animators = (animationType == ANIMATION_TYPE_MIDDLE)?
-            animateOutToMiddle() : animateOutToBottom();
-        AnimatorSet set = new AnimatorSet();
-        set.playTogether(animators);
-        set.setDuration(animationType == ANIMATION_TYPE_NONE? 0 : ANIMATION_DURATION);
-        set.setStartDelay(delay);
-        set.start();
-        set.addListener(new Animator.AnimatorListener() {
-            @Override
-            public void onAnimationStart(Animator animation) {
-                setEnabled(false);
-                if (mPatternListener != null) {
-                    mPatternListener.animateOutStart();
-                }
-            }
-
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                setEnabled(true);
-                if (mPatternListener != null) {
-                    mPatternListener.animateOutEnd();
-                }
-                setupCircles();
-            }
-
-            @Override
-            public void onAnimationCancel(Animator animation) {
-                onAnimationEnd(animation);
-            }
-
-            @Override
-            public void onAnimationRepeat(Animator animation) {
-
-            }
-        });
+        if (animationType == ANIMATION_TYPE_MIDDLE) {
+            animateOutToMiddle();
+        } else {
+            animateOutToBottom();
+        }
+        startAnimation(ANIMATION_OUT, delay);
     }
 
-    private List<Animator> animateOutToBottom() {
-        List<Animator> animators = new ArrayList<>();
+    private void animateOutToBottom() {
         int height = getHeight();
         if (height <= 0) {
             height = getResources().getDisplayMetrics().heightPixels;
         }
-        int totalLength = indexes.length;
-        for (int i = 0; i < totalLength; i++) {
+        boolean none = animationType == ANIMATION_TYPE_NONE;
+        animation.reset(none ? 0 : ANIMATION_DURATION, PatternAnimation.INTERPOLATOR_ACCELERATE);
+        for (int i = 0; i < indexes.length; i++) {
             int circleNumber = indexes[i];
-            ValueAnimator topAnim = ValueAnimator.ofInt(circles[circleNumber].top, height);
-            topAnim.setInterpolator(new AccelerateInterpolator());
-            if (animationType != ANIMATION_TYPE_NONE) {
-                topAnim.setStartDelay((ANIMATION_DURATION / indexes.length) * (i%3));
-            }
-            topAnim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                Rect circle = null;
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    int top = (Integer) animation.getAnimatedValue();
-                    circle.top = top;
-                    circle.bottom = top + diameter;
-                    invalidate();
-                }
-                public ValueAnimator.AnimatorUpdateListener init(Rect rect) {
-                    circle = rect;
-                    return this;
-                }
-            }.init(circles[circleNumber]));
-            animators.add(topAnim);
+            long startDelay = none ? 0 : (ANIMATION_DURATION / indexes.length) * (i % grid.getColumns());
+            animation.add(circleNumber, circleLeft[circleNumber], circleTop[circleNumber],
+                    circleLeft[circleNumber], height, startDelay);
         }
-        return animators;
     }
 
-    private List<Animator> animateOutToMiddle() {
-        List<Animator> animators = new ArrayList<>();
+    private void animateOutToMiddle() {
+        int middleLeft = grid.getMiddleX() - radius;
+        int middleTop = grid.getMiddleY() - radius;
+        animation.reset(ANIMATION_DURATION, PatternAnimation.INTERPOLATOR_DECELERATE);
         for (int i = 0; i < indexes.length; i++) {
-            final int circleNumber = indexes[i];
-            ValueAnimator leftAnim = ValueAnimator.ofInt(circles[circleNumber].left, circles[4].left);
-            leftAnim.setInterpolator(new DecelerateInterpolator());
-            if (animationType != ANIMATION_TYPE_NONE) {
-                leftAnim.setStartDelay((ANIMATION_DURATION / indexes.length) * i);
+            int circleNumber = indexes[i];
+            animation.add(circleNumber, circleLeft[circleNumber], circleTop[circleNumber],
+                    middleLeft, middleTop, (ANIMATION_DURATION / indexes.length) * i);
+        }
+    }
+
+    /**
+     * Remember an animation requested before layout, replacing any earlier request
+     *
+     * @param direction ANIMATION_IN or ANIMATION_OUT
+     * @param delay     delay before the animation starts
+     */
+    private void requestAnimation(int direction, long delay) {
+        pendingDirection = direction;
+        pendingDelay = delay;
+        addPendingAnimationListener();
+    }
+
+    private void addPendingAnimationListener() {
+        if (!pendingListenerAdded) {
+            getViewTreeObserver().addOnPreDrawListener(pendingAnimationListener);
+            pendingListenerAdded = true;
+        }
+    }
+
+    private void startPendingAnimation() {
+        int direction = pendingDirection;
+        pendingDirection = ANIMATION_PENDING_NONE;
+        if (direction == ANIMATION_IN) {
+            animateIn(pendingDelay);
+        } else if (direction == ANIMATION_OUT) {
+            animateOut(pendingDelay);
+        }
+    }
+
+    private void cancelPendingAnimation() {
+        pendingDirection = ANIMATION_PENDING_NONE;
+        removePendingAnimationListener();
+    }
+
+    private void removePendingAnimationListener() {
+        if (pendingListenerAdded) {
+            ViewTreeObserver observer = getViewTreeObserver();
+            if (observer.isAlive()) {
+                observer.removeOnPreDrawListener(pendingAnimationListener);
             }
-            leftAnim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                Rect circle = null;
+            pendingListenerAdded = false;
+        }
+    }
 
-                @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    int left = (Integer) animation.getAnimatedValue();
-                    circle.left = left;
-                    circle.right = left + diameter;
-                }
+    /**
+     * Cancel the running animation, jumping to its end state, and drop any animation
+     * still waiting for layout
+     */
+    public void cancelAnimation() {
+        cancelPendingAnimation();
+        if (animator != null) {
+            animator.cancel();
+        }
+    }
+
+    /**
+     * Run the prepared animation on the single animator shared by all circles
+     *
+     * @param direction ANIMATION_IN or ANIMATION_OUT
+     * @param delay     delay before the animation starts
+     */
+    private void startAnimation(int direction, long delay) {
+        if (animator == null) {
+            animator = ValueAnimator.ofFloat(0f, 1f);
+            animator.setInterpolator(new LinearInterpolator());
+            animator.addUpdateListener(animatorListener);
+            animator.addListener(animatorListener);
+        }
+        // ends the running animation, if any, before the new one is set up
+        animator.cancel();
+        clearPattern();
+        animationDirection = direction;
+        animationDuration = animation.getTotalDuration();
+        if (direction == ANIMATION_IN) {
+            applyAnimation(0);
+        }
+        animator.setDuration(animationDuration);
+        animator.setStartDelay(delay);
+        animator.start();
+    }
 
-                public ValueAnimator.AnimatorUpdateListener init(Rect rect) {
-                    circle = rect;
-                    return this;
+    /**
+     * Move every animated circle to its position at the given time and invalidate once
+     *
+     * @param playTime time since the animation started
+     */
+    private void applyAnimation(long playTime) {
+        for (int i = 0; i < animation.getCount(); i++) {
+            markCircle(animation.getSlot(i));
+        }
+        animation.apply(playTime, circleLeft, circleTop);
+        for (int i = 0; i < animation.getCount(); i++) {
+            markCircle(animation.getSlot(i));
+        }
+        circlesAtRest = false;
+        invalidateDirty();
+    }
+
+    /**
+     * Drives the circle positions from the shared animator and reports start and end
+     */
+    private class AnimatorListener extends AnimatorListenerAdapter implements ValueAnimator.AnimatorUpdateListener {
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animator) {
+            if (metrics != null) {
+                metrics.recordAnimationFrame(System.nanoTime());
+            }
+            applyAnimation((long) (animator.getAnimatedFraction() * animationDuration));
+        }
+
+        @Override
+        public void onAnimationStart(Animator animator) {
+            setEnabled(false);
+            if (animationDirection == ANIMATION_IN) {
+                setVisibility(VISIBLE);
+                if (mPatternListener != null) {
+                    mPatternListener.animateInStart();
                 }
-            }.init(circles[circleNumber]));
-            animators.add(leftAnim);
+            } else if (mPatternListener != null) {
+                mPatternListener.animateOutStart();
+            }
+        }
 
-            ValueAnimator topAnim = ValueAnimator.ofInt(circles[circleNumber].top, circles[4].top);
-            topAnim.setInterpolator(new DecelerateInterpolator());
-            if (animationType != ANIMATION_TYPE_NONE) {
-                topAnim.setStartDelay((ANIMATION_DURATION / indexes.length) * i);
+        @Override
+        public void onAnimationEnd(Animator animator) {
+            setEnabled(true);
+            if (metrics != null) {
+                metrics.endAnimation();
             }
-            topAnim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                Rect circle = null;
-                @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    int top = (Integer) animation.getAnimatedValue();
-                    circle.top = top;
-                    circle.bottom = top + diameter;
-                    invalidate();
+            if (animationDirection == ANIMATION_IN) {
+                applyAnimation(animationDuration);
+                circlesAtRest = true;
+                invalidateAll();
+                if (mPatternListener != null) {
+                    mPatternListener.animateInEnd();
                 }
-                public ValueAnimator.AnimatorUpdateListener init(Rect rect) {
-                    circle = rect;
-                    return this;
+            } else {
+                if (mPatternListener != null) {
+                    mPatternListener.animateOutEnd();
                 }
-            }.init(circles[circleNumber]));
-            animators.add(topAnim);
+                // the animated-out frame stays on screen, the next animateIn() or reset()
+                // redraws the circles from the layer at their resting positions
+                setupCircles();
+            }
         }
-        return animators;
     }
 
     /**
@@ -619,6 +1338,44 @@ public class ConnectPatternView extends View {
         void animateOutEnd();
     }
 
+    /**
+     * An interface for receiving the entered pattern without boxing
+     */
+    public interface OnPatternPathListener {
+        /**
+         * @param path read-only view of the connected circles, only valid during the call
+         */
+        void onPatternEntered(PatternPath path);
+    }
+
+    /**
+     * An interface for measuring how much of the widget is redrawn and how long it takes
+     */
+    public interface OnFrameDrawnListener {
+        /**
+         * Called at the end of onDraw
+         *
+         * @param dirtyPixels   number of pixels invalidated since the previous frame
+         * @param viewPixels    number of pixels of the whole view
+         * @param drawTimeNanos time spent drawing the frame
+         * @param cached        true if the circles came from the cached layer
+         */
+        void onFrameDrawn(int dirtyPixels, int viewPixels, long drawTimeNanos, boolean cached);
+    }
+
+    /**
+     * An interface for the result of a {@link PatternVerifier}
+     */
+    public interface OnPatternVerifiedListener {
+        /**
+         * Called on the UI thread once the verifier has checked the entered pattern
+         *
+         * @param pattern the verified circle indexes
+         * @param matched true if the pattern was accepted
+         */
+        void onPatternVerified(int[] pattern, boolean matched);
+    }
+
     /**
      * Set a callback when animations starts/ends for the widget
      *
@@ -627,4 +1384,267 @@ public class ConnectPatternView extends View {
     public void setOnConnectPatternListener(OnConnectPatternListener l) {
         mPatternListener = l;
     }
+
+    /**
+     * Set a callback receiving the entered pattern as primitive circle indexes.
+     * It is called before {@link OnConnectPatternListener#onPatternEntered(ArrayList)}.
+     *
+     * @param l OnPatternPathListener
+     */
+    public void setOnPatternPathListener(OnPatternPathListener l) {
+        mPathListener = l;
+    }
+
+    /**
+     * Verify every entered pattern on a background thread shared by all views.
+     * While verifying, the pattern stays on screen. An accepted pattern is shown in the
+     * success state and locks the input until {@link #clearPattern()}, a rejected one is
+     * shown in the error state. A new touch cancels a running verification.
+     *
+     * @param patternVerifier verifier to run, null to stop verifying
+     */
+    public void setPatternVerifier(PatternVerifier patternVerifier) {
+        setPatternVerifier(patternVerifier, getSharedVerifierExecutor());
+    }
+
+    /**
+     * Verify every entered pattern on the given executor
+     *
+     * @param patternVerifier verifier to run, null to stop verifying
+     * @param executor        executor running the verifier
+     * @see #setPatternVerifier(PatternVerifier)
+     */
+    public void setPatternVerifier(PatternVerifier patternVerifier, ExecutorService executor) {
+        if (verifier != null) {
+            verifier.cancel();
+        }
+        if (patternVerifier == null) {
+            verifier = null;
+            return;
+        }
+        final Handler handler = new Handler(Looper.getMainLooper());
+        verifier = new AsyncPatternVerifier(patternVerifier, executor, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        });
+        verifier.setCacheSize(verifierCacheSize);
+    }
+
+    /**
+     * Connect the circles lying on the straight line between two connected circles, like
+     * the platform lock screen, so a fast swipe from one corner to the other connects the
+     * circles in between
+     *
+     * @param enabled true to connect jumped over circles
+     */
+    public void setConnectIntermediate(boolean enabled) {
+        setConfig(new ConnectPatternConfig.Builder(config).setConnectIntermediate(enabled).build());
+    }
+
+    /**
+     * Measure the time spent in onTouchEvent and onDraw, the delay from a touch event to the
+     * frame showing it, dropped animation frames and the number of invalidations and connected
+     * circles. Off by default, measuring does not allocate.
+     *
+     * @param metrics metrics to record into, null to stop measuring
+     */
+    public void setPatternMetrics(PatternMetrics metrics) {
+        this.metrics = metrics;
+        pendingEventTime = -1;
+        updateFramePeriod();
+    }
+
+    /**
+     * Use the refresh rate of the display to detect dropped animation frames
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private void updateFramePeriod() {
+        if (metrics != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            Display display = getDisplay();
+            if (display != null && display.getRefreshRate() > 0) {
+                metrics.setFramePeriod((long) (1000000000L / display.getRefreshRate()));
+            }
+        }
+    }
+
+    /**
+     * Process move events once per display frame instead of as they arrive. On digitisers
+     * reporting faster than the display refreshes this saves the hit-testing and redraw
+     * requests of the samples nobody would see. Every sample is kept and processed in order,
+     * so no circle is missed. Down and up events are handled at once, after the queued moves.
+     * Needs API 16, older versions keep processing every event.
+     *
+     * @param enabled true to coalesce move events
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public void setTouchCoalescing(boolean enabled) {
+        if (enabled == (touchBatch != null)) {
+            return;
+        }
+        if (enabled) {
+            touchBatch = new TouchBatch();
+            if (touchFrameCallback == null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                touchFrameCallback = new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        touchFramePosted = false;
+                        processTouchBatch();
+                    }
+                };
+            }
+        } else {
+            processTouchBatch();
+            touchBatch = null;
+        }
+    }
+
+    /**
+     * @return counters of the move events received and the frames that processed them, null
+     * unless coalescing is enabled
+     */
+    public TouchBatch getTouchBatch() {
+        return touchBatch;
+    }
+
+    /**
+     * Draw the line following the finger to where the finger is expected to be when the frame
+     * is shown, rather than where it was at the last touch event. Only real samples connect
+     * circles, the prediction is never hit-tested. A horizon of one or two display frames and a
+     * maximum distance of about a circle's spacing work well, for example
+     * {@code new TouchPredictor(16, 48 * density)}.
+     *
+     * @param predictor predictor fed with the samples of this view, null to stop predicting
+     */
+    public void setTouchPredictor(TouchPredictor predictor) {
+        touchPredictor = predictor;
+        if (predictor != null) {
+            predictor.reset();
+        }
+        markLineToTouchPoint();
+        updateLineEnd();
+        markLineToTouchPoint();
+        invalidateDirty();
+    }
+
+    /**
+     * Record every touch sample the view receives, including the batched historical ones,
+     * into a bounded ring buffer. The trace can be exported with {@link GestureTrace#toByteArray()}
+     * and replayed with {@link #replayGestureTrace(GestureTrace)} or a {@link com.bcgdv.asia.lib.connectpattern.core.TraceReplayer}.
+     *
+     * @param trace trace to record into, null to stop recording
+     */
+    public void setGestureTrace(GestureTrace trace) {
+        gestureTrace = trace;
+    }
+
+    /**
+     * Feed a recorded trace through onTouchEvent as if the touches happened now, with the
+     * historical samples batched the way they were recorded. Samples are not recorded again.
+     *
+     * @param trace recorded samples
+     */
+    public void replayGestureTrace(GestureTrace trace) {
+        GestureTrace recording = gestureTrace;
+        gestureTrace = null;
+        try {
+            GestureTrace.Cursor cursor = trace.newCursor();
+            MotionEvent event = null;
+            long downTime = 0;
+            while (cursor.next()) {
+                if (cursor.getAction() == GestureTrace.ACTION_DOWN) {
+                    downTime = cursor.getTime();
+                }
+                if (event == null) {
+                    event = MotionEvent.obtain(downTime, cursor.getTime(), MotionEvent.ACTION_MOVE,
+                            cursor.getX(), cursor.getY(), 0);
+                } else {
+                    event.addBatch(cursor.getTime(), cursor.getX(), cursor.getY(), 1, 1, 0);
+                }
+                if (cursor.isHistorical()) {
+                    continue;
+                }
+                switch (cursor.getAction()) {
+                    case GestureTrace.ACTION_DOWN:
+                        event.setAction(MotionEvent.ACTION_DOWN);
+                        break;
+                    case GestureTrace.ACTION_UP:
+                        event.setAction(MotionEvent.ACTION_UP);
+                        break;
+                    case GestureTrace.ACTION_CANCEL:
+                        event.setAction(MotionEvent.ACTION_CANCEL);
+                        break;
+                    default:
+                        break;
+                }
+                onTouchEvent(event);
+                event.recycle();
+                event = null;
+            }
+            if (event != null) {
+                event.recycle();
+            }
+        } finally {
+            gestureTrace = recording;
+        }
+    }
+
+    /**
+     * Report every circle as soon as it is connected, while the finger is still moving.
+     * A matcher rejecting the prefix turns the pattern into the error state at once, stops
+     * connecting circles and skips the pattern verifier when the finger is lifted.
+     * A new touch resets the matcher.
+     *
+     * @param matcher matcher called from onTouchEvent, null to stop reporting circles
+     */
+    public void setPrefixMatcher(PrefixMatcher matcher) {
+        prefixMatcher = matcher;
+        engine.setPrefixMatcher(matcher);
+    }
+
+    /**
+     * Remember the results of recently verified patterns so repeated attempts are answered
+     * without running the verifier again
+     *
+     * @param maxEntries number of remembered patterns, 0 to disable
+     */
+    public void setPatternVerifierCacheSize(int maxEntries) {
+        verifierCacheSize = maxEntries;
+        if (verifier != null) {
+            verifier.setCacheSize(maxEntries);
+        }
+    }
+
+    private static synchronized ExecutorService getSharedVerifierExecutor() {
+        if (sVerifierExecutor == null) {
+            sVerifierExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ConnectPatternVerifier");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sVerifierExecutor;
+    }
+
+    /**
+     * Set a callback receiving the result of the pattern verifier
+     *
+     * @param l OnPatternVerifiedListener
+     */
+    public void setOnPatternVerifiedListener(OnPatternVerifiedListener l) {
+        mVerifiedListener = l;
+    }
+
+    /**
+     * Set a callback reporting the invalidated pixels and the draw time of every frame
+     *
+     * @param l OnFrameDrawnListener
+     */
+    public void setOnFrameDrawnListener(OnFrameDrawnListener l) {
+        mFrameListener = l;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+package com.bcgdv.asia.lib.connectpattern;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import java.util.HashMap;
+
+/**
+ * Dots rasterised once per look, size and density, drawn with one bitmap blit each.
+ * <p>
+ * A plain circle or a drawable without states has one cell. A stateful drawable, for example
+ * a selector, gets one cell per variant side by side: idle, connected ({@code state_activated}),
+ * success and error (connected plus {@code connectPatternStateSuccess} or
+ * {@code connectPatternStateError}). Atlases are reference counted like {@link SharedResources}
+ * and only used on the UI thread.
+ */
+final class DotAtlas {
+
+    static final int VARIANT_IDLE = 0;
+    static final int VARIANT_CONNECTED = 1;
+    static final int VARIANT_SUCCESS = 2;
+    static final int VARIANT_ERROR = 3;
+    private static final int VARIANT_COUNT = 4;
+
+    private static final int[][] VARIANT_STATES = {
+            {},
+            {android.R.attr.state_activated},
+            {android.R.attr.state_activated, R.attr.connectPatternStateSuccess},
+            {android.R.attr.state_activated, R.attr.connectPatternStateError},
+    };
+
+    private static final HashMap<Key, DotAtlas> sAtlases = new HashMap<>();
+
+    private final Key key;
+    private int references;
+
+    private final int diameter;
+    private final boolean variants;
+    private Bitmap bitmap;
+
+    /**
+     * Get the atlas of a look and size, rasterising it if no view uses it yet
+     *
+     * @param drawable    drawable of the dots, null for circles
+     * @param circleColor color of the circles, only used without a drawable
+     * @param diameter    size of one dot in pixels
+     * @param density     display density
+     * @return the shared atlas, release it when it is no longer used
+     */
+    static DotAtlas acquire(Drawable drawable, int circleColor, int diameter, float density) {
+        Key key = new Key(drawable, drawable == null ? circleColor : 0, diameter, density);
+        DotAtlas atlas = sAtlases.get(key);
+        if (atlas == null) {
+            atlas = new DotAtlas(key, drawable, circleColor);
+            sAtlases.put(key, atlas);
+        }
+        atlas.references++;
+        return atlas;
+    }
+
+    /**
+     * @return number of atlases in use, for tests
+     */
+    static int getAtlasCount() {
+        return sAtlases.size();
+    }
+
+    private DotAtlas(Key key, Drawable drawable, int circleColor) {
+        this.key = key;
+        diameter = key.diameter;
+        variants = drawable != null && drawable.isStateful();
+        if (diameter <= 0) {
+            return;
+        }
+        int cells = variants ? VARIANT_COUNT : 1;
+        bitmap = Bitmap.createBitmap(diameter * cells, diameter, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        if (drawable == null) {
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setColor(circleColor);
+            float radius = diameter / 2f;
+            canvas.drawCircle(radius, radius, radius, paint);
+            return;
+        }
+        int[] state = drawable.getState();
+        for (int i = 0; i < cells; i++) {
+            if (variants) {
+                drawable.setState(VARIANT_STATES[i]);
+            }
+            drawable.setBounds(i * diameter, 0, (i + 1) * diameter, diameter);
+            drawable.draw(canvas);
+        }
+        if (variants) {
+            drawable.setState(state);
+        }
+    }
+
+    /**
+     * Stop using the atlas, the last view to release it frees the bitmap
+     */
+    void release() {
+        if (--references > 0) {
+            return;
+        }
+        sAtlases.remove(key);
+        if (bitmap != null) {
+            bitmap.recycle();
+            bitmap = null;
+        }
+    }
+
+    /**
+     * @return the atlas, null if the dots have no size
+     */
+    Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    /**
+     * @return true if connected, success and error dots look different from idle ones
+     */
+    boolean hasVariants() {
+        return variants;
+    }
+
+    /**
+     * Draw one dot
+     *
+     * @param canvas  canvas to draw on
+     * @param variant one of the VARIANT constants
+     * @param left    left edge of the dot
+     * @param top     top edge of the dot
+     * @param source  reusable rectangle receiving the cell
+     * @param target  reusable rectangle receiving the destination
+     */
+    void draw(Canvas canvas, int variant, int left, int top, Rect source, Rect target) {
+        if (!variants) {
+            canvas.drawBitmap(bitmap, left, top, null);
+            return;
+        }
+        source.set(variant * diameter, 0, (variant + 1) * diameter, diameter);
+        target.set(left, top, left + diameter, top + diameter);
+        canvas.drawBitmap(bitmap, source, target, null);
+    }
+
+    /**
+     * Everything that decides how the dots are rasterised
+     */
+    private static final class Key {
+
+        /**
+         * Constant state of the drawable, or the drawable itself if it has none
+         */
+        final Object drawable;
+        final int circleColor;
+        final int diameter;
+        final float density;
+
+        Key(Drawable drawable, int circleColor, int diameter, float density) {
+            if (drawable == null) {
+                this.drawable = null;
+            } else {
+                Drawable.ConstantState state = drawable.getConstantState();
+                this.drawable = state != null ? state : drawable;
+            }
+            this.circleColor = circleColor;
+            this.diameter = diameter;
+            this.density = density;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return drawable == other.drawable
+                    && circleColor == other.circleColor
+                    && diameter == other.diameter
+                    && density == other.density;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = drawable != null ? drawable.hashCode() : 0;
+            h = 31 * h + circleColor;
+            h = 31 * h + diameter;
+            h = 31 * h + Float.floatToIntBits(density);
+            return h;
+        }
+    }
+}
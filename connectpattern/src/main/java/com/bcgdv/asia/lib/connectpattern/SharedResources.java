@@ -0,0 +1,248 @@
+package com.bcgdv.asia.lib.connectpattern;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Paints, dot atlas and cached circle layer shared by every view with the same look and size.
+ * <p>
+ * A view acquires the entry of its current style and size and releases it when either changes
+ * or when it is detached. The last release recycles the bitmaps. The dot atlas does not depend
+ * on the size of the view and is shared further, between all entries with the same dots.
+ * Entries are only used on the UI thread.
+ */
+final class SharedResources {
+
+    private static final HashMap<Key, SharedResources> sEntries = new HashMap<>();
+
+    final Key key;
+    private int references;
+
+    /**
+     * Line paints indexed by pattern state
+     */
+    private final Paint[] linePaints = new Paint[3];
+
+    /**
+     * Dots drawn once and blitted for every circle
+     */
+    private final DotAtlas atlas;
+
+    /**
+     * All dots at their resting positions
+     */
+    private Bitmap circleLayer;
+    private Canvas circleLayerCanvas;
+    private boolean circleLayerDrawn;
+
+    /**
+     * Get the entry of a style and size, creating it if no view uses it yet
+     *
+     * @param key      style and size of the view
+     * @param drawable drawable of the dots, only used when the entry is created
+     * @return the shared entry, release it when it is no longer used
+     */
+    static SharedResources acquire(Key key, Drawable drawable) {
+        SharedResources resources = sEntries.get(key);
+        if (resources == null) {
+            resources = new SharedResources(key, drawable);
+            sEntries.put(key, resources);
+        }
+        resources.references++;
+        return resources;
+    }
+
+    /**
+     * @return number of entries in use, for tests
+     */
+    static int getEntryCount() {
+        return sEntries.size();
+    }
+
+    private SharedResources(Key key, Drawable drawable) {
+        this.key = key;
+        int[] colors = {key.lineColor, key.successColor, key.errorColor};
+        for (int i = 0; i < linePaints.length; i++) {
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setColor(colors[i]);
+            paint.setStrokeWidth(key.lineWidth);
+            if (key.lineStyle == ConnectPatternView.LINE_STYLE_PATH) {
+                paint.setStyle(Paint.Style.STROKE);
+                paint.setStrokeJoin(Paint.Join.ROUND);
+                paint.setStrokeCap(Paint.Cap.ROUND);
+            }
+            linePaints[i] = paint;
+        }
+        atlas = DotAtlas.acquire(drawable, key.circleColor, key.radius * 2, key.density);
+    }
+
+    /**
+     * Stop using the entry, the last view to release it frees the bitmaps
+     */
+    void release() {
+        if (--references > 0) {
+            return;
+        }
+        sEntries.remove(key);
+        atlas.release();
+        if (circleLayer != null) {
+            circleLayer.recycle();
+            circleLayer = null;
+            circleLayerCanvas = null;
+        }
+    }
+
+    /**
+     * @param state pattern state
+     * @return paint of the connecting lines in this state
+     */
+    Paint getLinePaint(int state) {
+        return linePaints[state];
+    }
+
+    /**
+     * @return dots of this look, null if the dots have no size
+     */
+    DotAtlas getAtlas() {
+        return atlas.getBitmap() != null ? atlas : null;
+    }
+
+    /**
+     * @return canvas of the circle layer if the circles still have to be drawn into it, null otherwise
+     */
+    Canvas beginCircleLayer() {
+        if (circleLayerDrawn || key.width <= 0 || key.height <= 0) {
+            return null;
+        }
+        if (circleLayer == null) {
+            circleLayer = Bitmap.createBitmap(key.width, key.height, Bitmap.Config.ARGB_8888);
+            circleLayerCanvas = new Canvas(circleLayer);
+        }
+        circleLayerDrawn = true;
+        return circleLayerCanvas;
+    }
+
+    /**
+     * @return circles at their resting positions, null until drawn through {@link #beginCircleLayer()}
+     */
+    Bitmap getCircleLayer() {
+        return circleLayerDrawn ? circleLayer : null;
+    }
+
+    /**
+     * Everything that decides how a view looks at rest
+     */
+    static final class Key {
+
+        final int circleColor;
+        final int lineColor;
+        final int successColor;
+        final int errorColor;
+        final int radius;
+        final int lineWidth;
+        final int lineStyle;
+        /**
+         * Constant state of the drawable, or the drawable itself if it has none
+         */
+        final Object drawable;
+        final float density;
+        final int columns;
+        final int rows;
+        final int[] indexes;
+        final int width;
+        final int height;
+        final int paddingLeft;
+        final int paddingTop;
+        final int paddingRight;
+        final int paddingBottom;
+        private final int hash;
+
+        Key(int circleColor, int lineColor, int successColor, int errorColor, int radius, int lineWidth,
+            int lineStyle, Drawable drawable, float density, int columns, int rows, int[] indexes,
+            int width, int height, int paddingLeft, int paddingTop, int paddingRight, int paddingBottom) {
+            this.circleColor = circleColor;
+            this.lineColor = lineColor;
+            this.successColor = successColor;
+            this.errorColor = errorColor;
+            this.radius = radius;
+            this.lineWidth = lineWidth;
+            this.lineStyle = lineStyle;
+            if (drawable == null) {
+                this.drawable = null;
+            } else {
+                Drawable.ConstantState state = drawable.getConstantState();
+                this.drawable = state != null ? state : drawable;
+            }
+            this.density = density;
+            this.columns = columns;
+            this.rows = rows;
+            this.indexes = indexes.clone();
+            this.width = width;
+            this.height = height;
+            this.paddingLeft = paddingLeft;
+            this.paddingTop = paddingTop;
+            this.paddingRight = paddingRight;
+            this.paddingBottom = paddingBottom;
+            int h = circleColor;
+            h = 31 * h + lineColor;
+            h = 31 * h + successColor;
+            h = 31 * h + errorColor;
+            h = 31 * h + radius;
+            h = 31 * h + lineWidth;
+            h = 31 * h + lineStyle;
+            h = 31 * h + (this.drawable != null ? this.drawable.hashCode() : 0);
+            h = 31 * h + Float.floatToIntBits(density);
+            h = 31 * h + columns;
+            h = 31 * h + rows;
+            h = 31 * h + Arrays.hashCode(indexes);
+            h = 31 * h + width;
+            h = 31 * h + height;
+            h = 31 * h + paddingLeft;
+            h = 31 * h + paddingTop;
+            h = 31 * h + paddingRight;
+            h = 31 * h + paddingBottom;
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                    && circleColor == other.circleColor
+                    && lineColor == other.lineColor
+                    && successColor == other.successColor
+                    && errorColor == other.errorColor
+                    && radius == other.radius
+                    && lineWidth == other.lineWidth
+                    && lineStyle == other.lineStyle
+                    // drawables inflated from the same resource share their constant state
+                    && drawable == other.drawable
+                    && density == other.density
+                    && columns == other.columns
+                    && rows == other.rows
+                    && Arrays.equals(indexes, other.indexes)
+                    && width == other.width
+                    && height == other.height
+                    && paddingLeft == other.paddingLeft
+                    && paddingTop == other.paddingTop
+                    && paddingRight == other.paddingRight
+                    && paddingBottom == other.paddingBottom;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}